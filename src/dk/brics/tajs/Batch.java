@@ -0,0 +1,136 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import dk.brics.tajs.analysis.Analysis;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.OptionValues;
+import dk.brics.tajs.util.AnalysisException;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Batch mode for the TAJS program analysis.
+ * <p>
+ * Analyzes the inputs listed in a manifest file one after the other in the same JVM,
+ * such that JVM startup, class loading and warm-up are only paid once.
+ * Each non-empty line of the manifest that does not start with '#' contains the command-line arguments
+ * (options and files, separated by whitespace) of one analysis.
+ * For each line, a JSON record with the outcome, the time and the memory usage is written to the result file
+ * (one record per line).
+ * <p>
+ * The internal state of the analysis is reset between the analyses, except the canonicalization cache
+ * (see {@link Main#resetKeepingCanonicalInstances()}).
+ * The analyses are not run concurrently, as the analysis state is kept in static fields.
+ */
+public class Batch {
+
+    private static Logger log = Logger.getLogger(Batch.class);
+
+    private Batch() {
+    }
+
+    /**
+     * Runs the analyses listed in the manifest.
+     * Usage: java -cp tajs-all.jar dk.brics.tajs.Batch MANIFEST RESULTS
+     * Terminates with System.exit.
+     */
+    public static void main(String[] args) {
+        Main.initLogging();
+        if (args.length != 2) {
+            log.info("Usage: java -cp tajs-all.jar dk.brics.tajs.Batch MANIFEST RESULTS\n");
+            System.exit(-1);
+        }
+        try {
+            run(Paths.get(args[0]), Paths.get(args[1]));
+            System.exit(0);
+        } catch (IOException e) {
+            log.error("Error: " + e.getMessage());
+            System.exit(-2);
+        }
+    }
+
+    /**
+     * Runs the analyses listed in the given manifest file and writes the result records to the given file.
+     */
+    public static void run(Path manifest, Path results) throws IOException {
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        Gson gson = new Gson();
+        try (BufferedWriter out = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                JsonObject record = analyze(line.split("\\s+"));
+                record.addProperty("line", i + 1);
+                record.addProperty("input", line);
+                out.write(gson.toJson(record));
+                out.newLine();
+                out.flush(); // records of completed analyses survive if a later one kills the JVM
+            }
+        }
+    }
+
+    /**
+     * Runs a single analysis.
+     *
+     * @return the result record
+     */
+    private static JsonObject analyze(String[] args) {
+        JsonObject record = new JsonObject();
+        Main.resetKeepingCanonicalInstances();
+        Runtime runtime = Runtime.getRuntime();
+        long time = System.nanoTime();
+        String status;
+        try {
+            OptionValues options = new OptionValues();
+            options.parse(args);
+            options.checkConsistency();
+            Analysis a = Main.init(options, Monitoring.make(), null);
+            if (a == null) {
+                status = "invalid";
+            } else {
+                Main.run(a);
+                status = "ok";
+            }
+        } catch (CmdLineException e) {
+            status = "invalid";
+            record.addProperty("message", e.getMessage());
+        } catch (AnalysisException e) {
+            status = "error";
+            record.addProperty("message", e.getMessage());
+        } catch (RuntimeException | StackOverflowError e) { // isolate the remaining analyses from internal errors
+            status = "error";
+            record.addProperty("message", e.toString());
+            log.error("Error: " + e, e);
+        }
+        record.addProperty("status", status);
+        record.addProperty("timeMs", (System.nanoTime() - time) / 1000000);
+        record.addProperty("usedMemory", runtime.totalMemory() - runtime.freeMemory());
+        return record;
+    }
+}
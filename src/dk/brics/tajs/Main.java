@@ -23,10 +23,10 @@ import dk.brics.tajs.flowgraph.HostEnvSources;
 import dk.brics.tajs.flowgraph.JavaScriptSource;
 import dk.brics.tajs.flowgraph.JavaScriptSource.Kind;
 import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
 import dk.brics.tajs.js2flowgraph.FlowGraphBuilder;
 import dk.brics.tajs.js2flowgraph.HTMLParser;
 import dk.brics.tajs.lattice.Obj;
-import dk.brics.tajs.lattice.ScopeChain;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.Value;
 import dk.brics.tajs.monitoring.AnalysisPhase;
@@ -34,7 +34,9 @@ import dk.brics.tajs.monitoring.AnalysisTimeLimiter;
 import dk.brics.tajs.monitoring.CompositeMonitoring;
 import dk.brics.tajs.monitoring.IAnalysisMonitoring;
 import dk.brics.tajs.monitoring.MaxMemoryUsageMonitor;
+import dk.brics.tajs.monitoring.MetricsMonitor;
 import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.monitoring.ProfilingMonitor;
 import dk.brics.tajs.monitoring.ProgramExitReachabilityChecker;
 import dk.brics.tajs.monitoring.TAJSAssertionReachabilityCheckerMonitor;
 import dk.brics.tajs.monitoring.inspector.datacollection.InspectorFactory;
@@ -51,6 +53,7 @@ import dk.brics.tajs.util.Collectors;
 import dk.brics.tajs.util.Loader;
 import dk.brics.tajs.util.Pair;
 import dk.brics.tajs.util.PathAndURLUtils;
+import dk.brics.tajs.util.ResultCache;
 import dk.brics.tajs.util.Strings;
 import net.htmlparser.jericho.Source;
 import org.apache.log4j.Logger;
@@ -108,13 +111,22 @@ public class Main {
      */
     public static void reset() {
         Canonicalizer.reset();
+        resetKeepingCanonicalInstances();
+    }
+
+    /**
+     * Resets all internal counters and caches, except the canonicalization cache.
+     * Canonical instances made by previous analyses remain valid, since they are immutable and
+     * compared structurally when canonicalized. Keeping them allows analyses in the same JVM to share them,
+     * for example the ECMAScript part of the initial state (see {@link OptionValues#isReuseInitialStateEnabled()}).
+     */
+    public static void resetKeepingCanonicalInstances() {
         ExperimentalOptions.ExperimentalOptionsManager.reset();
         Options.reset();
         State.reset();
         Value.reset();
         Obj.reset();
         Strings.reset();
-        ScopeChain.reset();
         NodeJSRequire.reset();
     }
 
@@ -158,6 +170,14 @@ public class Main {
         enterPhase(AnalysisPhase.INITIALIZATION, analysis.getMonitoring());
         Source document = null;
         FlowGraph fg;
+        ResultCache resultCache = null;
+        if (Options.get().getResultCacheDir() != null) {
+            String unsupported = getResultCacheUnsupportedReason();
+            if (unsupported != null)
+                log.warn("Result cache not used: " + unsupported);
+            else
+                resultCache = new ResultCache(Options.get().getResultCacheDir(), Options.get().toString());
+        }
         try {
             // split into JS files and HTML files
             URL htmlFile = null;
@@ -185,11 +205,19 @@ public class Main {
                 if (htmlFile != null)
                     throw new AnalysisException("Cannot analyze an HTML file and JavaScript files at the same time");
                 // build flowgraph for JS files
+                List<Pair<String, SourceLocationMaker>> sources = newList();
                 for (URL js_file : js_files) {
                     if (!Options.get().isQuietEnabled())
                         log.info("Loading " + js_file);
-                    builder.transformStandAloneCode(Loader.getString(js_file, Charset.forName("UTF-8")), new SourceLocation.StaticLocationMaker(js_file));
+                    String code = Loader.getString(js_file, Charset.forName("UTF-8"));
+                    if (resultCache != null)
+                        resultCache.addSource(code);
+                    sources.add(Pair.make(code, new SourceLocation.StaticLocationMaker(js_file)));
                 }
+                if (Options.get().isParallelParsingEnabled())
+                    builder.preParseStandAloneCode(sources, Options.get().getParallelParsingThreads());
+                for (Pair<String, SourceLocationMaker> source : sources)
+                    builder.transformStandAloneCode(source.getFirst(), source.getSecond());
             } else {
                 // build flowgraph for JavaScript code in or referenced from HTML file
                 Options.get().enableIncludeDom(); // always enable DOM if any HTML files are involved
@@ -197,17 +225,27 @@ public class Main {
                     log.info("Loading " + htmlFile);
                 HTMLParser p = new HTMLParser(htmlFile);
                 document = p.getHTML();
+                if (resultCache != null)
+                    resultCache.addSource(document.toString());
+                List<Pair<JavaScriptSource, SourceLocationMaker>> sources = newList();
                 for (Pair<URL, JavaScriptSource> js : p.getJavaScript()) {
+                    if (resultCache != null)
+                        resultCache.addSource(js.getSecond().getCode());
                     if (!Options.get().isQuietEnabled() && js.getSecond().getKind() == Kind.FILE)
                         log.info("Loading " + PathAndURLUtils.getRelativeToWorkingDirectory(PathAndURLUtils.toPath(js.getFirst())));
-                    builder.transformWebAppCode(js.getSecond(), new SourceLocation.StaticLocationMaker(js.getFirst()));
+                    sources.add(Pair.make(js.getSecond(), new SourceLocation.StaticLocationMaker(js.getFirst())));
                 }
+                if (Options.get().isParallelParsingEnabled())
+                    builder.preParseWebAppCode(sources, Options.get().getParallelParsingThreads());
+                for (Pair<JavaScriptSource, SourceLocationMaker> source : sources)
+                    builder.transformWebAppCode(source.getFirst(), source.getSecond());
             }
             fg = builder.close();
         } catch (IOException e) {
             log.error("Error: Unable to load and parse " + e.getMessage());
             return null;
         }
+        analysis.setResultCache(resultCache);
         if (sync != null)
             sync.setFlowGraph(fg);
         if (Options.get().isFlowGraphEnabled())
@@ -220,6 +258,34 @@ public class Main {
         return analysis;
     }
 
+    /**
+     * Checks whether the output of a cached analysis result can replace the analysis.
+     * A cached result only contains the log output of the scan phase, so options that need the analysis results
+     * in other ways (through monitors or the solver) are not supported.
+     *
+     * @return the reason why the result cache cannot be used, or null if it can
+     */
+    private static String getResultCacheUnsupportedReason() {
+        OptionValues options = Options.get();
+        if (options.isNodeJS())
+            return "not supported for NodeJS analysis"; // required modules are not part of the key
+        if (options.isFlowGraphEnabled())
+            return "not supported with -flowgraph";
+        if (options.isCallbackGraphStatsEnabled())
+            return "not supported with -callback-graph-statistics";
+        if (options.isMemoryMeasurementEnabled())
+            return "not supported with -memory-usage";
+        if (options.getMetricsPort() >= 0 || options.getMetricsFile() != null)
+            return "not supported with -metrics-port or -metrics-file";
+        if (options.isProfileEnabled() || options.getProfileStacksFile() != null)
+            return "not supported with -profile or -profile-stacks";
+        if (options.getSoundnessTesterOptions().isTest())
+            return "not supported with soundness testing";
+        if (options.isInspectorEnabled())
+            return "not supported with -inspector";
+        return null;
+    }
+
     /**
      * Adds additional monitors according to the options.
      */
@@ -239,6 +305,12 @@ public class Main {
             extraMonitors.add(new MaxMemoryUsageMonitor());
             // extraMonitors.add(new MemoryUsageDiagnosisMonitor()); // for development use only
         }
+        if (Options.get().getMetricsPort() >= 0 || Options.get().getMetricsFile() != null) {
+            extraMonitors.add(new MetricsMonitor(Options.get().getMetricsPort(), Options.get().getMetricsFile()));
+        }
+        if (Options.get().isProfileEnabled() || Options.get().getProfileStacksFile() != null) {
+            extraMonitors.add(new ProfilingMonitor(Options.get().getProfileTop(), Options.get().getProfileStacksFile()));
+        }
 
         // Analysis results checking monitors
         // Note: the first one to throw an exception will prevent the others from reporting errors
@@ -291,6 +363,14 @@ public class Main {
     public static void run(Analysis analysis) throws AnalysisException {
         IAnalysisMonitoring monitoring = analysis.getMonitoring();
 
+        ResultCache resultCache = analysis.getResultCache();
+        if (resultCache != null && resultCache.isHit()) {
+            if (!Options.get().isQuietEnabled())
+                log.info("Source code and options unchanged, reusing cached analysis result");
+            resultCache.replay();
+            return;
+        }
+
         long time = System.currentTimeMillis();
 
         enterPhase(AnalysisPhase.ANALYSIS, monitoring);
@@ -314,9 +394,18 @@ public class Main {
         if (Options.get().isFlowGraphEnabled())
             dumpFlowGraph(analysis.getSolver().getFlowGraph(), true);
 
-        enterPhase(AnalysisPhase.SCAN, monitoring);
-        analysis.getSolver().scan();
-        leavePhase(AnalysisPhase.SCAN, monitoring);
+        if (resultCache != null)
+            resultCache.startCapture();
+        try {
+            enterPhase(AnalysisPhase.SCAN, monitoring);
+            analysis.getSolver().scan();
+            leavePhase(AnalysisPhase.SCAN, monitoring);
+            if (resultCache != null)
+                resultCache.saveCapture();
+        } finally {
+            if (resultCache != null)
+                resultCache.stopCapture(); // the output of a failed scan is not saved
+        }
     }
 
     /**
@@ -27,6 +27,7 @@ import dk.brics.tajs.solver.IAnalysis;
 import dk.brics.tajs.solver.IEdgeTransfer;
 import dk.brics.tajs.solver.IWorkListStrategy;
 import dk.brics.tajs.solver.SolverSynchronizer;
+import dk.brics.tajs.util.ResultCache;
 
 /**
  * Encapsulation of the analysis using {@link State}, {@link Context},
@@ -53,6 +54,8 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
 
     private final PropVarOperations state_util;
 
+    private ResultCache result_cache;
+
     /**
      * Constructs a new analysis object.
      */
@@ -61,7 +64,7 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
         this.monitoring = monitoring;
         initial_state_builder = new InitialStateBuilder();
         transfer = new Transfer();
-        worklist_strategy = new WorkListStrategy();
+        worklist_strategy = Options.get().isBucketWorkListEnabled() ? new BucketWorkListStrategy() : new WorkListStrategy();
         eval_cache = new EvalCache();
         solver = new Solver(this, sync);
         state_util = new PropVarOperations(unsoundness);
@@ -152,4 +155,18 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
     public Unsoundness getUnsoundness() {
         return unsoundness;
     }
+
+    /**
+     * Returns the result cache, or null if not enabled.
+     */
+    public ResultCache getResultCache() {
+        return result_cache;
+    }
+
+    /**
+     * Sets the result cache.
+     */
+    public void setResultCache(ResultCache result_cache) {
+        this.result_cache = result_cache;
+    }
 }
@@ -68,12 +68,14 @@ public class AsyncEvents {
             return;
         CallbackGraph callbackGraph = c.getAnalysisLatticeElement()
                 .getCallbackGraph();
+        // the forks of the callbacks only differ after the call, so they share the queue of this state until then
+        State forkState = state.clone();
+        pushLevels(forkState, InitialStateBuilder.SET_TIMEOUT_QUEUE_OBJ);
+        pushLevels(forkState, InitialStateBuilder.ASYNC_IO);
         for (CallbackGraph.CallbackGraphNode node : firstCallbacks) {
             CallbackCallInfo firstCallback = callbackGraph
                     .getCallbackInfo(node);
-            State callState = state.clone();
-            pushLevels(callState, InitialStateBuilder.SET_TIMEOUT_QUEUE_OBJ);
-            pushLevels(callState, InitialStateBuilder.ASYNC_IO);
+            State callState = forkState.clone();
             c.withState(callState, () -> {
                     callState.setCallbackContext(node.getSecond());
                     callState.appendToQueueChain(firstCallback.getDependentQueueObjects(),
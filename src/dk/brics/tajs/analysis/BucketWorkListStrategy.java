@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.jsnodes.EventDispatcherNode;
+import dk.brics.tajs.flowgraph.jsnodes.ExceptionalReturnNode;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.solver.BlockAndContext;
+import dk.brics.tajs.solver.IPrioritizedWorkListStrategy;
+
+/**
+ * Work list strategy with precomputed priorities, for use with a bucket queue.
+ * <p>
+ * Follows the order of {@link WorkListStrategy}:
+ * event dispatcher nodes last, exceptional return nodes before those,
+ * most recently discovered function/context first, then block order (see {@link #getBlockOrder(dk.brics.tajs.flowgraph.BasicBlock)}), then breadth first.
+ * The exception is entries of the same function and entry context but with different local contexts (for example with loop unrolling).
+ * For those, {@link WorkListStrategy} uses breadth first order only, which is not transitive,
+ * so no priority key can give the same order.
+ * The analysis may then take a different path and reach a different result, so this strategy can change the output of the analysis.
+ */
+public class BucketWorkListStrategy extends WorkListStrategy implements IPrioritizedWorkListStrategy<Context> {
+
+    private static final int RANK_ORDINARY = 0;
+
+    private static final int RANK_EXCEPTIONAL_RETURN = 1;
+
+    private static final int RANK_EVENT_DISPATCHER = 2;
+
+    /**
+     * Constructs a new BucketWorkListStrategy object.
+     */
+    public BucketWorkListStrategy() {
+    }
+
+    @Override
+    public int getNumberOfRanks() {
+        return 3;
+    }
+
+    @Override
+    public int getRank(IEntry<Context> e) {
+        AbstractNode n = e.getBlock().getFirstNode();
+        if (n instanceof EventDispatcherNode)
+            return RANK_EVENT_DISPATCHER;
+        if (n instanceof ExceptionalReturnNode)
+            return RANK_EXCEPTIONAL_RETURN;
+        return RANK_ORDINARY;
+    }
+
+    @Override
+    public int getGroup(IEntry<Context> e) {
+        return call_graph.getBlockContextOrder(BlockAndContext.makeEntry(e.getBlock(), e.getContext()));
+    }
+
+    @Override
+    public int getPosition(IEntry<Context> e) {
+        return getBlockOrder(e.getBlock());
+    }
+
+    @Override
+    public int compare(IEntry<Context> e1, IEntry<Context> e2) {
+        if (e1.getSerial() == e2.getSerial())
+            return 0;
+        int c = Integer.compare(getRank(e1), getRank(e2));
+        if (c == 0)
+            c = Integer.compare(getGroup(e2), getGroup(e1));
+        if (c == 0)
+            c = Integer.compare(getPosition(e1), getPosition(e2));
+        if (c == 0)
+            c = Integer.compare(e1.getSerial(), e2.getSerial());
+        return c;
+    }
+}
@@ -35,9 +35,11 @@ import dk.brics.tajs.lattice.Value;
 import dk.brics.tajs.monitoring.IAnalysisMonitoring;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.IInitialStateBuilder;
+import dk.brics.tajs.util.Canonicalizer;
 import dk.brics.tajs.util.Collections;
 import net.htmlparser.jericho.Source;
 
+import java.util.Map;
 import java.util.Set;
 
 import static dk.brics.tajs.util.Collections.newSet;
@@ -196,6 +198,11 @@ public class InitialStateBuilder implements IInitialStateBuilder<State, Context,
     public static ObjectLabel WELLKNOWN_SYMBOL_TO_STRING_TAG;
     public static ObjectLabel WELLKNOWN_SYMBOL_UNSCOPABLES;
 
+    /**
+     * Snapshot of the ECMAScript part of the initial state, null if not made yet.
+     */
+    private static Snapshot snapshot;
+
     /**
      * Constructs a new InitialStateBuilder object.
      */
@@ -257,7 +264,11 @@ public class InitialStateBuilder implements IInitialStateBuilder<State, Context,
 
         // add to the state
         c.withState(initialState, () -> {
-            buildECMAInitialState(c);
+            if (Options.get().isReuseInitialStateEnabled()) {
+                buildOrReuseECMAInitialState(c);
+            } else {
+                buildECMAInitialState(c);
+            }
             if (Options.get().isDOMEnabled()) {
                 DOMBuilder.build(document, c);
             }
@@ -269,6 +280,32 @@ public class InitialStateBuilder implements IInitialStateBuilder<State, Context,
         return initialState;
     }
 
+    /**
+     * Builds the ECMAScript part of the initial state, or copies it from the snapshot of a previous analysis.
+     */
+    private void buildOrReuseECMAInitialState(Solver.SolverInterface c) {
+        State s = c.getState();
+        synchronized (InitialStateBuilder.class) {
+            if (snapshot == null || !snapshot.isValid()) {
+                buildECMAInitialState(c);
+                snapshot = new Snapshot(s);
+                return;
+            }
+            s.setToSnapshot(snapshot.state);
+        }
+        ASYNC_IO = snapshot.async_io;
+        SET_TIMEOUT_QUEUE_OBJ = snapshot.set_timeout_queue_obj;
+        // the host objects made by init() have identity equality, so the labels in the snapshot must be used
+        ONFULFILL_FUN = snapshot.onfulfill_fun;
+        ONREJECT_FUN = snapshot.onreject_fun;
+        PROMISE_RACER = snapshot.promise_racer;
+        DEFAULT_ONFULFILL = snapshot.default_onfulfill;
+        DEFAULT_ONREJECT = snapshot.default_onreject;
+        PROMISE_RACE_FUN = snapshot.promise_race_fun;
+        State.QUEUE_OBJECT_KINDS.put(ASYNC_IO, QueueObject.Kind.ASYNC_IO);
+        State.QUEUE_OBJECT_KINDS.put(SET_TIMEOUT_QUEUE_OBJ, QueueObject.Kind.TIMER);
+    }
+
     private void buildECMAInitialState(Solver.SolverInterface c) {
         State s = c.getState();
         PropVarOperations pv = c.getAnalysis().getPropVarOperations();
@@ -842,4 +879,54 @@ public class InitialStateBuilder implements IInitialStateBuilder<State, Context,
         pv.writePropertyWithAttributes(objlabel, "name", Value.makeStr(name).setAttributes(true, false, true));
         c.getState().writeInternalPrototype(objlabel, Value.makeObject(internal_proto));
     }
+
+    /**
+     * Snapshot of the ECMAScript part of the initial state.
+     * The abstract values are canonicalized and compared by identity,
+     * so the snapshot is only valid as long as the canonicalization cache is the same.
+     * It is also specific to the option values, since several options affect the initial state.
+     */
+    private static final class Snapshot {
+
+        private final Canonicalizer canonicalizer;
+
+        private final Map<String, Object> options;
+
+        private final State state;
+
+        private final ObjectLabel async_io;
+
+        private final ObjectLabel set_timeout_queue_obj;
+
+        private final DefaultReactionFunction onfulfill_fun;
+
+        private final DefaultReactionFunction onreject_fun;
+
+        private final RaceFunction promise_racer;
+
+        private final ObjectLabel default_onfulfill;
+
+        private final ObjectLabel default_onreject;
+
+        private final ObjectLabel promise_race_fun;
+
+        private Snapshot(State s) {
+            canonicalizer = Canonicalizer.get();
+            options = Options.get().getOptionValues();
+            state = new State(null, null); // not bound to the analysis that made it
+            state.setToSnapshot(s);
+            async_io = ASYNC_IO;
+            set_timeout_queue_obj = SET_TIMEOUT_QUEUE_OBJ;
+            onfulfill_fun = ONFULFILL_FUN;
+            onreject_fun = ONREJECT_FUN;
+            promise_racer = PROMISE_RACER;
+            default_onfulfill = DEFAULT_ONFULFILL;
+            default_onreject = DEFAULT_ONREJECT;
+            promise_race_fun = PROMISE_RACE_FUN;
+        }
+
+        private boolean isValid() {
+            return canonicalizer == Canonicalizer.get() && options.equals(Options.get().getOptionValues());
+        }
+    }
 }
@@ -139,6 +139,13 @@ public class PropVarOperations {
             Collection<ObjectLabel> ol = singleton(base);
             while (!ol.isEmpty()) {
                 Set<ObjectLabel> ol2 = newSet();
+                if (ol.size() > 1 && propertystr.isMaybeSingleStr()) { // recover the property of all the objects at this level at once
+                    Collection<ObjectProperty> props = newList();
+                    for (ObjectLabel l : ol)
+                        if (!visited.contains(l) && l.getKind() != ObjectLabel.Kind.STRING)
+                            props.add(ObjectProperty.makeOrdinary(l, StringPKey.make(propertystr.getStr())));
+                    UnknownValueResolver.recover(props, c.getState(), true);
+                }
                 for (ObjectLabel l : ol)
                     if (!visited.contains(l)) {
                         visited.add(l);
@@ -330,6 +337,12 @@ public class PropVarOperations {
      */
     public Value readPropertyDirect(Collection<ObjectLabel> objlabels, PKey propertyname) {
         State state = c.getState();
+        if (objlabels.size() > 1) { // recover the property of all the objects at once
+            Collection<ObjectProperty> props = newList();
+            for (ObjectLabel obj : objlabels)
+                props.add(ObjectProperty.makeOrdinary(obj, propertyname));
+            UnknownValueResolver.recover(props, state, true);
+        }
         Collection<Value> values = newList();
         for (ObjectLabel obj : objlabels)
             values.add(UnknownValueResolver.getProperty(obj, propertyname, state, true));
@@ -17,26 +17,57 @@
 package dk.brics.tajs.analysis;
 
 import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.WeakTopologicalOrder;
 import dk.brics.tajs.flowgraph.jsnodes.EventDispatcherNode;
 import dk.brics.tajs.flowgraph.jsnodes.ExceptionalReturnNode;
 import dk.brics.tajs.lattice.CallEdge;
 import dk.brics.tajs.lattice.Context;
 import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.BlockAndContext;
 import dk.brics.tajs.solver.CallGraph;
 import dk.brics.tajs.solver.IWorkListStrategy;
 
+import java.util.Map;
+
+import static dk.brics.tajs.util.Collections.newMap;
+
 /**
  * Work list strategy.
  */
 public class WorkListStrategy implements IWorkListStrategy<Context> {
 
-    private CallGraph<State, Context, CallEdge> call_graph;
+    protected CallGraph<State, Context, CallEdge> call_graph;
+
+    /**
+     * Positions of the blocks in the weak topological order of their functions, computed on demand.
+     * Null if the blocks are ordered by {@link BasicBlock#getOrder()}.
+     */
+    private final Map<BasicBlock, Integer> weak_topological_positions;
 
     /**
      * Constructs a new WorkListStrategy object.
      */
     public WorkListStrategy() {
+        weak_topological_positions = Options.get().isWeakTopologicalWorkListEnabled() ? newMap() : null;
+    }
+
+    /**
+     * Returns the order of the given block among the blocks of its function.
+     */
+    protected int getBlockOrder(BasicBlock b) {
+        if (weak_topological_positions == null)
+            return b.getOrder();
+        Integer pos = weak_topological_positions.get(b);
+        if (pos == null) { // first use of the function, or the function has been modified
+            Function f = b.getFunction();
+            int i = 0;
+            for (BasicBlock fb : WeakTopologicalOrder.make(f))
+                weak_topological_positions.put(fb, i++);
+            pos = weak_topological_positions.get(b);
+        }
+        return pos;
     }
 
     /**
@@ -73,9 +104,11 @@ public class WorkListStrategy implements IWorkListStrategy<Context> {
 
         if (n1.getFunction().equals(n2.getFunction()) && e1.getContext().equals(e2.getContext())) {
             // same function and same context: use block order
-            if (n1.getOrder() < n2.getOrder())
+            int order1 = getBlockOrder(n1);
+            int order2 = getBlockOrder(n2);
+            if (order1 < order2)
                 return E1_FIRST;
-            else if (n2.getOrder() < n1.getOrder())
+            else if (order2 < order1)
                 return E2_FIRST;
         }
 
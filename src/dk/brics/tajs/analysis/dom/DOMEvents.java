@@ -287,7 +287,7 @@ public class DOMEvents {
             triggerEventHandler(EventType.MOUSE, c);
             triggerEventHandler(EventType.AJAX, c);
             triggerEventHandler(EventType.UNKNOWN, c);
-            triggerEventHandler(EventType.OTHER, c);
+            // EventType.OTHER is not triggered separately: it has the same handlers and event object as EventType.UNKNOWN, which is never filtered as a user event
             triggerEventHandler(EventType.TIMEOUT, c);
         }
     }
@@ -682,11 +682,11 @@ public class UserFunctionCalls {
         for (Map.Entry<ObjectLabel, Obj> me : summarized_calledge.getStore().entrySet())
             if (!return_state.getStore().containsKey(me.getKey()))
                 return_state.putObject(me.getKey(), me.getValue());// obj is freshly created at summarizeStoreAndRegisters, so freeze() unnecessary
-        for (Map.Entry<ObjectLabel, Set<QueueObject>> qu: summarized_calledge.getQueue().entrySet()) {
+        for (Map.Entry<ObjectLabel, Set<QueueObject>> qu: summarized_calledge.getReadOnlyQueue().entrySet()) {
             Set<QueueObject> queueObjects = qu.getValue();
             ObjectLabel objectLabel = qu.getKey();
-            if (!return_state.getQueue().containsKey(objectLabel))
-                return_state.addQueueObjects(objectLabel, queueObjects);
+            if (!return_state.getReadOnlyQueue().containsKey(objectLabel))
+                return_state.addQueueObjects(objectLabel, cloneQueueObjects(queueObjects));
             else {
                 QueueObject.Kind kind = QueueObject.Kind.PROMISE;
                 if (objectLabel.equals(InitialStateBuilder.ASYNC_IO))
@@ -704,7 +704,7 @@ public class UserFunctionCalls {
                         .anyMatch(x -> !x.isSettled() && !x.isDependent());
                 if (!(hasDependentPending && nonDependentPending))
                     return_state.addQueueObjects(qu.getKey(),
-                            QueueObject.join(retQueueObjects, queueObjects,
+                            QueueObject.join(retQueueObjects, cloneQueueObjects(queueObjects),
                                              QueueObject.Join.DEFAULT,
                                              !replacePending, kind));
             }
@@ -752,6 +752,15 @@ public class UserFunctionCalls {
         return res;
     }
 
+    /**
+     * Returns copies of the given queue objects.
+     * Used by {@link #mergeFunctionReturn(State, State, State, State, Summarized, Value, Value, Function)}
+     * for queue objects that are read from the call edge state without making its queue writable.
+     */
+    private static Set<QueueObject> cloneQueueObjects(Set<QueueObject> queueObjects) {
+        return queueObjects.stream().map(QueueObject::clone).collect(Collectors.toSet());
+    }
+
     /**
      * Replaces the polymorphic properties of the given object.
      * Used by {@link #mergeFunctionReturn(State, State, State, State, Summarized, Value, Value, Function)}.
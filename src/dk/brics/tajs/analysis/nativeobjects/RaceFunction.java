@@ -43,7 +43,7 @@ public class RaceFunction extends InternalFunction {
                                        false, true, null, false);
                 return;
             }
-            boolean isPending = state.getQueue().get(promise)
+            boolean isPending = state.getReadOnlyQueue().get(promise)
                     .stream().anyMatch(x -> !x.isSettled());
             if (!isPending)
                 // Promise has been resolved.
@@ -51,7 +51,7 @@ public class RaceFunction extends InternalFunction {
             if (value.isMaybeNonPromise()) {
                 /* Case 1: The array element is not a promise
                    so we simply resolve the promise with this value. */
-                boolean canBeResolved = state.getQueue()
+                boolean canBeResolved = state.getReadOnlyQueue()
                         .get(promise)
                         .stream()
                         .filter(x -> !x.isSettled())
@@ -76,7 +76,7 @@ public class RaceFunction extends InternalFunction {
             // Case 2: The array element is a promise.
             Value promiseValue = value.restrictToPromises();
             for (ObjectLabel l: promiseValue.getObjectLabels()) {
-                Set<QueueObject> queueObjects = state.getQueue().get(l);
+                Set<QueueObject> queueObjects = state.getReadOnlyQueue().get(l);
                 for (QueueObject q: queueObjects) {
                     if (!q.isSettled())
                         continue;
@@ -202,7 +202,7 @@ public class TAJSFunctionEvaluator {
                 "",
                 "Prints the objects placed in the queue",
                 (call, state, pv, c) -> {
-                    for (Map.Entry<ObjectLabel, Set<QueueObject>> qs: c.getState().getQueue().entrySet())
+                    for (Map.Entry<ObjectLabel, Set<QueueObject>> qs: c.getState().getReadOnlyQueue().entrySet())
                         for (QueueObject qObj: qs.getValue())
                             c.getMonitoring().addMessageInfo(
                                     c.getNode(),
@@ -654,7 +654,7 @@ public class TAJSFunctionEvaluator {
                 "Asserts that the object is not in the queue",
                 (call, state, pv, c) -> {
                     Value x = FunctionCalls.readParameter(call, state, 0);
-                    Set<ObjectLabel> objectLabels = c.getState().getQueue().keySet();
+                    Set<ObjectLabel> objectLabels = c.getState().getReadOnlyQueue().keySet();
                     for (ObjectLabel objectLabel: x.getObjectLabels())
                         if (objectLabels.contains(objectLabel))
                             throw new AnalysisException(
@@ -753,7 +753,7 @@ public class TAJSFunctionEvaluator {
         if (queueObj == null)
             throw new AnalysisException(
                     "Given timer " + timer + " is not supported");
-        Set<QueueObject> queueObjects = state.getQueue().get(queueObj);
+        Set<QueueObject> queueObjects = state.getReadOnlyQueue().get(queueObj);
         if (queueObjects.size() != 1)
             throw new AnalysisException("Object " + queueObj.toString()
                     + " is associated with multiple queue objects");
@@ -774,7 +774,7 @@ public class TAJSFunctionEvaluator {
                                                   Value value) {
         if (queueObj == null)
             throw new AnalysisException();
-        Set<QueueObject> queueObjects = state.getQueue().get(queueObj);
+        Set<QueueObject> queueObjects = state.getReadOnlyQueue().get(queueObj);
         if (queueObjects == null)
             throw new AnalysisException("Object " + queueObj.toString()
                     + " not found in the queue");
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.flowgraph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.addToMapSet;
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Weak topological order of the blocks of a function
+ * (Bourdoncle: "Efficient chaotic iteration strategies with widenings", FMPA 1993).
+ * <p>
+ * Computed by hierarchical decomposition into strongly connected components:
+ * the components are ordered topologically, and the blocks of a cyclic component are ordered
+ * with its head first, followed by the weak topological order of the remaining blocks of the component.
+ * The blocks of each loop are thereby contiguous in the order and placed before the blocks that follow the loop,
+ * so a work list that processes blocks in this order stabilizes inner loops before propagating outward.
+ * Exception handlers are treated as successors.
+ * The recursion depth is the loop nesting depth, not the number of blocks.
+ */
+public class WeakTopologicalOrder {
+
+    private final List<BasicBlock> order;
+
+    private final Map<BasicBlock, Set<BasicBlock>> predecessors;
+
+    private WeakTopologicalOrder(Collection<BasicBlock> blocks) {
+        order = newList();
+        predecessors = newMap();
+        for (BasicBlock b : blocks)
+            for (BasicBlock succ : getSuccessors(b))
+                addToMapSet(predecessors, succ, b);
+    }
+
+    /**
+     * Returns the blocks of the given function in weak topological order.
+     */
+    public static List<BasicBlock> make(Function f) {
+        WeakTopologicalOrder wto = new WeakTopologicalOrder(f.getBlocks());
+        List<BasicBlock> blocks = newList(f.getBlocks());
+        blocks.sort(Comparator.comparingInt(BasicBlock::getOrder));
+        wto.visitComponents(blocks);
+        return wto.order;
+    }
+
+    private static List<BasicBlock> getSuccessors(BasicBlock b) {
+        Collection<BasicBlock> succs = b.getSuccessors();
+        List<BasicBlock> res = newList(succs);
+        if (b.getExceptionHandler() != null)
+            res.add(b.getExceptionHandler());
+        return res;
+    }
+
+    /**
+     * Appends the weak topological order of the subgraph induced by the given blocks (in block order).
+     */
+    private void visitComponents(List<BasicBlock> blocks) {
+        for (List<BasicBlock> component : findComponents(blocks)) {
+            if (component.size() == 1 && !getSuccessors(component.get(0)).contains(component.get(0))) {
+                order.add(component.get(0));
+                continue;
+            }
+            // the head is the first block that is entered from outside the component (or just the first block)
+            Set<BasicBlock> members = newSet(component);
+            BasicBlock head = null;
+            for (BasicBlock b : component) {
+                for (BasicBlock p : predecessors.getOrDefault(b, Collections.emptySet())) {
+                    if (!members.contains(p)) {
+                        head = b;
+                        break;
+                    }
+                }
+                if (head != null)
+                    break;
+            }
+            if (head == null)
+                head = component.get(0);
+            order.add(head);
+            List<BasicBlock> rest = newList(component);
+            rest.remove(head);
+            visitComponents(rest);
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of the subgraph induced by the given blocks (Tarjan, iteratively).
+     *
+     * @return the components in topological order, each with its blocks in block order
+     */
+    private static List<List<BasicBlock>> findComponents(List<BasicBlock> blocks) {
+        Map<BasicBlock, Integer> position = newMap();
+        for (BasicBlock b : blocks)
+            position.put(b, position.size());
+        int n = blocks.size();
+        int[] index = new int[n];
+        int[] lowlink = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] nextSucc = new int[n];
+        List<List<BasicBlock>> succs = newList();
+        for (BasicBlock b : blocks) {
+            List<BasicBlock> s = newList();
+            for (BasicBlock succ : getSuccessors(b))
+                if (position.containsKey(succ))
+                    s.add(succ);
+            succs.add(s);
+        }
+        Arrays.fill(index, -1);
+        int counter = 0;
+        List<Integer> stack = newList();
+        List<Integer> callStack = newList();
+        List<List<BasicBlock>> components = newList();
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1)
+                continue;
+            callStack.add(root);
+            index[root] = lowlink[root] = counter++;
+            stack.add(root);
+            onStack[root] = true;
+            while (!callStack.isEmpty()) {
+                int v = callStack.get(callStack.size() - 1);
+                if (nextSucc[v] < succs.get(v).size()) {
+                    int w = position.get(succs.get(v).get(nextSucc[v]++));
+                    if (index[w] == -1) {
+                        index[w] = lowlink[w] = counter++;
+                        stack.add(w);
+                        onStack[w] = true;
+                        callStack.add(w);
+                    } else if (onStack[w]) {
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                } else {
+                    callStack.remove(callStack.size() - 1);
+                    if (!callStack.isEmpty()) {
+                        int u = callStack.get(callStack.size() - 1);
+                        lowlink[u] = Math.min(lowlink[u], lowlink[v]);
+                    }
+                    if (lowlink[v] == index[v]) {
+                        List<BasicBlock> component = newList();
+                        int w;
+                        do {
+                            w = stack.remove(stack.size() - 1);
+                            onStack[w] = false;
+                            component.add(blocks.get(w));
+                        } while (w != v);
+                        component.sort(Comparator.comparingInt(position::get));
+                        components.add(component);
+                    }
+                }
+            }
+        }
+        // Tarjan finds the components in reverse topological order
+        Collections.reverse(components);
+        return components;
+    }
+}
@@ -63,6 +63,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.addNodeToBlock;
 import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.makeBasicBlock;
@@ -105,6 +109,11 @@ public class FlowGraphBuilder {
 
     private final ValueLogLocationInformation valueLogMappingInformation;
 
+    /**
+     * Sources that are being parsed ahead of their transformation, in transformation order.
+     */
+    private final LinkedList<PreParsed> preParsed = new LinkedList<>();
+
     /**
      * Constructs a flow graph builder.
      * @param env traversal environment
@@ -144,13 +153,26 @@ public class FlowGraphBuilder {
     }
 
     /**
-     * Parses the given JavaScript code.
+     * Parses the given JavaScript code, or takes the result of parsing it ahead.
      */
     private ProgramTree makeAST(String sourceContent, int lineOffset, int columnOffset, SourceLocationMaker sourceLocationMaker) {
         if (closed) {
             throw new RuntimeException("Already closed.");
         }
+        ParseResult parseResult = takePreParsed(sourceContent, lineOffset, columnOffset, sourceLocationMaker);
+        if (parseResult == null) {
+            parseResult = parse(sourceContent, lineOffset, columnOffset, sourceLocationMaker);
+        }
+        reportParseMessages(parseResult);
+        astInfo.updateWith(parseResult.getProgramAST());
+        return parseResult.getProgramAST();
+    }
 
+    /**
+     * Parses the given JavaScript code.
+     * Does not modify this builder, so it can be called concurrently.
+     */
+    private ParseResult parse(String sourceContent, int lineOffset, int columnOffset, SourceLocationMaker sourceLocationMaker) {
         // add line/column offsets (a bit hacky - but it avoids other silly encodings or extra fields)
         StringBuilder s = new StringBuilder();
         for (int i = 0; i < lineOffset; i++) {
@@ -160,11 +182,96 @@ public class FlowGraphBuilder {
             s.append(" ");
         }
         s.append(sourceContent);
+        return parser.parse(s.toString(), sourceLocationMaker);
+    }
 
-        ParseResult parseResult = parser.parse(s.toString(), sourceLocationMaker);
-        reportParseMessages(parseResult);
-        astInfo.updateWith(parseResult.getProgramAST());
-        return parseResult.getProgramAST();
+    /**
+     * Parses the given stand-alone JavaScript source code concurrently, ahead of the calls to {@link #transformStandAloneCode}.
+     *
+     * @see #preParse(List, int)
+     */
+    public void preParseStandAloneCode(List<Pair<String, SourceLocationMaker>> sources, int threads) {
+        preParse(sources.stream()
+                .map(s -> new PreParsed(s.getFirst(), 0, 0, s.getSecond()))
+                .collect(Collectors.toList()), threads);
+    }
+
+    /**
+     * Parses the given web application JavaScript source code concurrently, ahead of the calls to {@link #transformWebAppCode}.
+     *
+     * @see #preParse(List, int)
+     */
+    public void preParseWebAppCode(List<Pair<JavaScriptSource, SourceLocationMaker>> sources, int threads) {
+        preParse(sources.stream()
+                .map(s -> s.getFirst().getKind() == JavaScriptSource.Kind.FILE ?
+                        new PreParsed(s.getFirst().getCode(), 0, 0, s.getSecond()) :
+                        new PreParsed(s.getFirst().getCode(), s.getFirst().getLineOffset(), s.getFirst().getColumnOffset(), s.getSecond()))
+                .collect(Collectors.toList()), threads);
+    }
+
+    /**
+     * Starts parsing the given sources concurrently.
+     * The results are taken, in order, by the following transformations of the same sources.
+     * Only the parsing runs concurrently; the AST information and the translation to flow graph functions, blocks
+     * and nodes happen in the transformations, one source at a time and in the given order,
+     * so the resulting flow graph is the same as without parsing ahead.
+     */
+    private void preParse(List<PreParsed> sources, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (PreParsed p : sources) {
+                p.result = executor.submit(() -> parse(p.sourceContent, p.lineOffset, p.columnOffset, p.sourceLocationMaker));
+                preParsed.add(p);
+            }
+        } finally {
+            executor.shutdown(); // the submitted tasks still run
+        }
+    }
+
+    /**
+     * Takes the result of parsing the given source ahead, or returns null if the next source parsed ahead is a different one.
+     */
+    private ParseResult takePreParsed(String sourceContent, int lineOffset, int columnOffset, SourceLocationMaker sourceLocationMaker) {
+        PreParsed p = preParsed.peekFirst();
+        if (p == null || p.lineOffset != lineOffset || p.columnOffset != columnOffset
+                || p.sourceLocationMaker != sourceLocationMaker || !p.sourceContent.equals(sourceContent)) {
+            return null;
+        }
+        preParsed.removeFirst();
+        try {
+            return p.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AnalysisException(e.getCause());
+        }
+    }
+
+    /**
+     * Source code that is parsed ahead of its transformation.
+     */
+    private static final class PreParsed {
+
+        private final String sourceContent;
+
+        private final int lineOffset;
+
+        private final int columnOffset;
+
+        private final SourceLocationMaker sourceLocationMaker;
+
+        private Future<ParseResult> result;
+
+        private PreParsed(String sourceContent, int lineOffset, int columnOffset, SourceLocationMaker sourceLocationMaker) {
+            this.sourceContent = sourceContent;
+            this.lineOffset = lineOffset;
+            this.columnOffset = columnOffset;
+            this.sourceLocationMaker = sourceLocationMaker;
+        }
     }
 
     /**
@@ -252,6 +359,7 @@ public class FlowGraphBuilder {
      */
     public FlowGraph close(FlowGraph flowGraph, BasicBlock exitBlock) {
         closed = true;
+        preParsed.clear();
 
         if (flowGraph == null) {
             processed = addEventDispatchers(initialEnv.getFunction().getEntry().getSourceLocation(), initialEnv.makeAppendBlock(processed.getAppendBlock()));
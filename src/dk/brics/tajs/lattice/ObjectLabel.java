@@ -38,6 +38,16 @@ public final class ObjectLabel implements Comparable<ObjectLabel>, DeepImmutable
      */
     private static final SourceLocation initial_source = new SourceLocation.SyntheticLocationMaker("<initial state>").makeUnspecifiedPosition();
 
+    /**
+     * Canonicalization cache for object labels.
+     * Declared before the first call to {@link #make}, which uses it during class initialization.
+     * Unlike {@link Canonicalizer#get()}, it is not cleared by {@link dk.brics.tajs.Main#reset()},
+     * so object labels kept from an earlier analysis run (for example in static fields)
+     * remain the canonical instances and keep their numbers.
+     * The instances are only weakly referenced, so a number is only given up when no equal object label is reachable.
+     */
+    private static final Canonicalizer canonicalizer = new Canonicalizer();
+
     /**
      * Special object label for absent getter/setter.
      */
@@ -96,6 +106,14 @@ public final class ObjectLabel implements Comparable<ObjectLabel>, DeepImmutable
      */
     private final int hashcode;
 
+    /**
+     * Dense number of the canonical instance, 0 if not yet assigned.
+     * Numbers are never reused, and equal object labels have the same number as long as one of them is reachable.
+     */
+    private int id;
+
+    private static int next_id;
+
     private ObjectLabel(HostObject hostobject, AbstractNode node, Function function, Kind kind, HeapContext heapContext, boolean singleton) {
         this.hostobject = hostobject;
         this.node = node;
@@ -120,8 +138,17 @@ public final class ObjectLabel implements Comparable<ObjectLabel>, DeepImmutable
     }
 
     public static ObjectLabel make(HostObject hostobject, AbstractNode node, Function function, Kind kind, HeapContext heapContext, boolean singleton){
-        return Canonicalizer.get().canonicalize(new ObjectLabel(hostobject, node, function, kind, heapContext, singleton));
+        ObjectLabel objlabel = canonicalizer.canonicalize(new ObjectLabel(hostobject, node, function, kind, heapContext, singleton));
+        if (objlabel.id == 0)
+            assignId(objlabel);
+        return objlabel;
     }
+
+    private static synchronized void assignId(ObjectLabel objlabel) {
+        if (objlabel.id == 0)
+            objlabel.id = ++next_id;
+    }
+
     /**
      * Constructs a new object label for a user defined non-function object.
      */
@@ -168,6 +195,14 @@ public final class ObjectLabel implements Comparable<ObjectLabel>, DeepImmutable
         return make(hostobject, null, null, kind, null, true);
     }
 
+    /**
+     * Returns the number of this object label.
+     * Equal object labels have the same number.
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Returns the object label kind.
      */
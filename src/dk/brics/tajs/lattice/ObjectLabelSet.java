@@ -0,0 +1,205 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.lattice;
+
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.DeepImmutable;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * Immutable set of object labels, represented by the sorted numbers of the object labels.
+ * Membership, inclusion and equality are decided on the numbers (see {@link ObjectLabel#getId()}).
+ * Iteration is in insertion order, like the sets made by {@link dk.brics.tajs.util.Collections#newSet()}.
+ */
+public final class ObjectLabelSet extends AbstractSet<ObjectLabel> implements DeepImmutable {
+
+    /**
+     * The object labels in insertion order.
+     */
+    private final ObjectLabel[] labels;
+
+    /**
+     * The numbers of the object labels, sorted.
+     */
+    private final int[] ids;
+
+    private final int hashcode;
+
+    private ObjectLabelSet(ObjectLabel[] labels, int[] ids) {
+        this.labels = labels;
+        this.ids = ids;
+        int h = 0;
+        for (ObjectLabel objlabel : labels)
+            h += objlabel.hashCode();
+        this.hashcode = h;
+    }
+
+    /**
+     * Returns an object label set with the elements of the given collection.
+     */
+    public static ObjectLabelSet make(Collection<ObjectLabel> c) {
+        if (c instanceof ObjectLabelSet)
+            return (ObjectLabelSet) c;
+        ObjectLabel[] labels = new ObjectLabel[c.size()];
+        int[] ids = new int[labels.length];
+        int n = 0;
+        for (ObjectLabel objlabel : c) {
+            labels[n] = objlabel;
+            ids[n++] = objlabel.getId();
+        }
+        Arrays.sort(ids);
+        int m = 0;
+        for (int i = 0; i < ids.length; i++)
+            if (i == 0 || ids[i] != ids[i - 1])
+                ids[m++] = ids[i];
+        if (m != n) { // the collection had equal elements, remove the duplicates keeping the first occurrences
+            ids = Arrays.copyOf(ids, m);
+            List<ObjectLabel> unique = newList();
+            boolean[] seen = new boolean[m];
+            for (ObjectLabel objlabel : labels) {
+                int i = Arrays.binarySearch(ids, objlabel.getId());
+                if (!seen[i]) {
+                    seen[i] = true;
+                    unique.add(objlabel);
+                }
+            }
+            labels = unique.toArray(new ObjectLabel[m]);
+        }
+        return new ObjectLabelSet(labels, ids);
+    }
+
+    /**
+     * Returns the union of the two sets.
+     * The elements of the first set come first in the iteration order.
+     */
+    public static ObjectLabelSet union(Set<ObjectLabel> s1, Set<ObjectLabel> s2) {
+        ObjectLabelSet o1 = make(s1);
+        ObjectLabelSet o2 = make(s2);
+        int[] ids = new int[o1.ids.length + o2.ids.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < o1.ids.length || j < o2.ids.length) {
+            if (j == o2.ids.length || (i < o1.ids.length && o1.ids[i] < o2.ids[j]))
+                ids[n++] = o1.ids[i++];
+            else if (i == o1.ids.length || o2.ids[j] < o1.ids[i])
+                ids[n++] = o2.ids[j++];
+            else {
+                ids[n++] = o1.ids[i++];
+                j++;
+            }
+        }
+        ObjectLabel[] labels = Arrays.copyOf(o1.labels, n);
+        int k = o1.labels.length;
+        for (ObjectLabel objlabel : o2.labels)
+            if (!o1.containsId(objlabel.getId()))
+                labels[k++] = objlabel;
+        return new ObjectLabelSet(labels, Arrays.copyOf(ids, n));
+    }
+
+    private boolean containsId(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ObjectLabel && containsId(((ObjectLabel) o).getId());
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (!(c instanceof ObjectLabelSet))
+            return super.containsAll(c);
+        int[] other = ((ObjectLabelSet) c).ids;
+        if (other.length > ids.length)
+            return false;
+        int i = 0;
+        for (int id : other) {
+            while (i < ids.length && ids[i] < id)
+                i++;
+            if (i == ids.length || ids[i] != id)
+                return false;
+            i++;
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return labels.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return labels.length == 0;
+    }
+
+    @Override
+    public Iterator<ObjectLabel> iterator() {
+        return new Iterator<ObjectLabel>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < labels.length;
+            }
+
+            @Override
+            public ObjectLabel next() {
+                if (next == labels.length)
+                    throw new NoSuchElementException();
+                return labels[next++];
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (o instanceof ObjectLabelSet) {
+            ObjectLabelSet s = (ObjectLabelSet) o;
+            return hashcode == s.hashcode && Arrays.equals(ids, s.ids);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashcode;
+    }
+
+    @Override
+    public String toString() {
+        if (!Options.get().isDeterministicCollectionsEnabled())
+            return super.toString();
+        // same order as the sets made by Collections.newSet
+        List<ObjectLabel> sorted = newList(this);
+        sorted.sort((o1, o2) -> o2.toString().compareTo(o1.toString()));
+        return sorted.toString();
+    }
+}
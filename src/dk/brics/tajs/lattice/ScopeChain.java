@@ -16,13 +16,13 @@
 
 package dk.brics.tajs.lattice;
 
+import dk.brics.tajs.util.Canonicalizer;
 import dk.brics.tajs.util.Collections;
+import dk.brics.tajs.util.DeepImmutable;
 
-import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import static dk.brics.tajs.util.Collections.newSet;
 
@@ -30,7 +30,7 @@ import static dk.brics.tajs.util.Collections.newSet;
  * Abstract scope chain.
  * Immutable.
  */
-public final class ScopeChain {
+public final class ScopeChain implements DeepImmutable {
 
     private Set<ObjectLabel> obj; // TODO: canonicalize? (#140)
 
@@ -38,49 +38,6 @@ public final class ScopeChain {
 
     private int hashcode;
 
-    private static Map<ScopeChain, WeakReference<ScopeChain>> cache = new WeakHashMap<>();
-
-    private static int cache_hits;
-
-    private static int cache_misses;
-
-    /**
-     * Clears the canonicalization cache.
-     */
-    public static void clearCache() {
-        cache.clear();
-    }
-
-    /**
-     * Returns the canonicalization cache size.
-     */
-    public static int getCacheSize() {
-        return cache.size();
-    }
-
-    /**
-     * Returns the number of cache misses.
-     */
-    public static int getNumberOfCacheMisses() {
-        return cache_misses;
-    }
-
-    /**
-     * Returns the number of cache hits.
-     */
-    public static int getNumberOfCacheHits() {
-        return cache_hits;
-    }
-
-    /**
-     * Resets the cache numbers.
-     */
-    public static void reset() {
-        cache_hits = 0;
-        cache_misses = 0;
-        clearCache();
-    }
-
     /**
      * Creates a new scope chain.
      */
@@ -105,16 +62,7 @@ public final class ScopeChain {
     }
 
     private static ScopeChain canonicalize(ScopeChain e) {
-        WeakReference<ScopeChain> ref = cache.get(e);
-        ScopeChain c = ref != null ? ref.get() : null;
-        if (c == null) {
-            cache.put(e, new WeakReference<>(e));
-            cache_misses++;
-        } else {
-            e = c;
-            cache_hits++;
-        }
-        return e;
+        return Canonicalizer.get().canonicalize(e);
     }
 
     /**
@@ -33,16 +33,18 @@ import dk.brics.tajs.solver.IState;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Chain;
 import dk.brics.tajs.util.Collectors;
+import dk.brics.tajs.util.PersistentHashMap;
 import dk.brics.tajs.util.Strings;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -87,6 +89,8 @@ public class State implements IState<State, Context, CallEdge> {
 
     private Map<ObjectLabel, Set<QueueObject>> queue;
 
+    private boolean writable_queue; // for copy-on-write
+
     private Chain<QueueContext> queueChain;
 
     private Chain<CallbackDescription> scheduledCallbacks;
@@ -95,6 +99,22 @@ public class State implements IState<State, Context, CallEdge> {
 
     private boolean writable_store; // for copy-on-write
 
+    /**
+     * Labels of objects in the store that may be writable.
+     * Only used with the persistent store, where only these objects are frozen when the state is cloned.
+     */
+    private Set<ObjectLabel> unfrozen_objlabels;
+
+    /**
+     * The fork that this store was last copied at, null if unknown.
+     */
+    private StoreFork store_fork;
+
+    /**
+     * Labels of objects that have been written or removed in the store since the fork, null if none.
+     */
+    private Set<ObjectLabel> dirty_objlabels;
+
     /**
      * Reusable immutable part of the store.
      * Entries may be overridden by 'store'.
@@ -117,7 +137,11 @@ public class State implements IState<State, Context, CallEdge> {
     /**
      * Register values.
      */
-    private List<Value> registers; // register values never have attributes or modified flag
+    /**
+     * Register values, indexed by register number, null for undefined registers.
+     * Grown on demand, initially to the number of registers used in the function of the block.
+     */
+    private Value[] registers; // register values never have attributes or modified flag
 
     private boolean writable_registers; // for copy-on-write
 
@@ -130,10 +154,18 @@ public class State implements IState<State, Context, CallEdge> {
 
     private StateExtras extras;
 
+    private static final Value[] NO_REGISTERS = new Value[0];
+
     private static int number_of_states_created;
 
     private static int number_of_makewritable_store;
 
+    private static int number_of_propagate_calls;
+
+    private static int number_of_propagate_visited_objlabels;
+
+    private static int number_of_propagate_calls_with_fork;
+
     public static Map<ObjectLabel, QueueObject.Kind> QUEUE_OBJECT_KINDS = newMap();
 
 
@@ -169,6 +201,17 @@ public class State implements IState<State, Context, CallEdge> {
         return new State(this);
     }
 
+    /**
+     * Sets the contents of this state to a copy of the given snapshot state.
+     * The solver interface, block and context of this state are unchanged.
+     * The snapshot may belong to another analysis, so the fork of the store is not shared.
+     */
+    public void setToSnapshot(State x) {
+        setToState(x);
+        clearFork();
+        x.clearFork();
+    }
+
     /**
      * Sets this state to the same as the given one.
      */
@@ -176,17 +219,26 @@ public class State implements IState<State, Context, CallEdge> {
         summarized = new Summarized(x.summarized);
         store_default = x.store_default.freeze();
         extras = new StateExtras(x.extras);
-        store = newMap();
-        queue = new LinkedHashMap<>();
-        for (Map.Entry<ObjectLabel, Obj> xs : x.store.entrySet())
-            writeToStore(xs.getKey(), xs.getValue().freeze());
-        for (Map.Entry<ObjectLabel, Set<QueueObject>> ps: x.queue.entrySet())
-            this.queue.put(
-                    ps.getKey(),
-                    ps.getValue()
-                            .stream()
-                            .map(QueueObject::clone)
-                            .collect(Collectors.toSet()));
+        if (x.store instanceof PersistentHashMap) {
+            x.freezeStore();
+            store = ((PersistentHashMap<ObjectLabel, Obj>) x.store).fork();
+            unfrozen_objlabels = null;
+        } else {
+            store = newMap();
+            clearFork();
+            for (Map.Entry<ObjectLabel, Obj> xs : x.store.entrySet())
+                writeToStore(xs.getKey(), xs.getValue().freeze());
+        }
+        // the objects are now frozen and shared by the two stores
+        StoreFork fork = new StoreFork(x.store_fork, x.dirty_objlabels);
+        x.store_fork = fork;
+        x.dirty_objlabels = null;
+        store_fork = fork;
+        dirty_objlabels = null;
+        // the queue objects are shared until one of the states modifies them
+        queue = x.queue;
+        writable_queue = false;
+        x.writable_queue = false;
         this.queueChain = x.queueChain != null ?
                 x.queueChain.clone() : null;
         this.scheduledCallbacks = x.scheduledCallbacks != null ?
@@ -194,7 +246,7 @@ public class State implements IState<State, Context, CallEdge> {
         basis_store = x.basis_store;
         writable_store = true;
         execution_context = x.execution_context.clone();
-        registers = newList(x.registers);
+        registers = x.registers.clone();
         writable_registers = true;
         stacked_objlabels = newSet(x.stacked_objlabels);
         writable_stacked_objlabels = true;
@@ -232,14 +284,14 @@ public class State implements IState<State, Context, CallEdge> {
      * Checks whether the return register has a value.
      */
     public boolean hasReturnRegisterValue() {
-        return AbstractNode.RETURN_REG < registers.size() && registers.get(AbstractNode.RETURN_REG) != null;
+        return AbstractNode.RETURN_REG < registers.length && registers[AbstractNode.RETURN_REG] != null;
     }
 
     /**
      * Checks whether the exception register has a value.
      */
     public boolean hasExceptionRegisterValue() {
-        return AbstractNode.EXCEPTION_REG < registers.size() && registers.get(AbstractNode.EXCEPTION_REG) != null;
+        return AbstractNode.EXCEPTION_REG < registers.length && registers[AbstractNode.EXCEPTION_REG] != null;
     }
 
     /**
@@ -268,10 +320,42 @@ public class State implements IState<State, Context, CallEdge> {
         return store;
     }
 
+    /**
+     * Returns the queue.
+     * The queue objects may be modified by the caller, so the queue is made writable first.
+     */
     public Map<ObjectLabel, Set<QueueObject>> getQueue() {
+        makeWritableQueue();
         return this.queue;
     }
 
+    /**
+     * Returns the queue without making it writable.
+     * Only for reading! The queue objects may be shared with other states.
+     */
+    public Map<ObjectLabel, Set<QueueObject>> getReadOnlyQueue() {
+        return Collections.unmodifiableMap(this.queue);
+    }
+
+    /**
+     * Makes the queue writable (for copy-on-write).
+     * The queue objects are mutable, so they are cloned together with the map.
+     */
+    private void makeWritableQueue() {
+        if (writable_queue)
+            return;
+        Map<ObjectLabel, Set<QueueObject>> newQueue = new LinkedHashMap<>();
+        for (Map.Entry<ObjectLabel, Set<QueueObject>> ps: queue.entrySet())
+            newQueue.put(
+                    ps.getKey(),
+                    ps.getValue()
+                            .stream()
+                            .map(QueueObject::clone)
+                            .collect(Collectors.toSet()));
+        queue = newQueue;
+        writable_queue = true;
+    }
+
     /**
      * Sets an object in the store.
      */
@@ -282,6 +366,63 @@ public class State implements IState<State, Context, CallEdge> {
 
     private void writeToStore(ObjectLabel objlabel, Obj obj) {
         store.put(objlabel, obj);
+        markDirty(objlabel);
+        if (obj.isWritable() && store instanceof PersistentHashMap) {
+            if (unfrozen_objlabels == null)
+                unfrozen_objlabels = newSet();
+            unfrozen_objlabels.add(objlabel);
+        }
+    }
+
+    private void removeFromStore(ObjectLabel objlabel) {
+        store.remove(objlabel);
+        markDirty(objlabel);
+    }
+
+    /**
+     * Records that the given object has changed since the fork.
+     */
+    private void markDirty(ObjectLabel objlabel) {
+        if (store_fork == null)
+            return;
+        if (dirty_objlabels == null)
+            dirty_objlabels = newSet();
+        dirty_objlabels.add(objlabel);
+    }
+
+    /**
+     * Forgets the fork, for use when the store is replaced.
+     */
+    private void clearFork() {
+        store_fork = null;
+        dirty_objlabels = null;
+    }
+
+    /**
+     * Replaces the store by an empty one.
+     * The persistent store is used if enabled and copy-on-write is not disabled.
+     */
+    private void setToEmptyStore() {
+        if (Options.get().isPersistentStoreEnabled() && !Options.get().isCopyOnWriteDisabled())
+            store = new PersistentHashMap<>();
+        else
+            store = newMap();
+        unfrozen_objlabels = null;
+        clearFork();
+    }
+
+    /**
+     * Freezes the objects in the store that may be writable (for the persistent store).
+     */
+    private void freezeStore() {
+        if (unfrozen_objlabels == null)
+            return;
+        for (ObjectLabel objlabel : unfrozen_objlabels) {
+            Obj obj = store.get(objlabel);
+            if (obj != null)
+                obj.freeze();
+        }
+        unfrozen_objlabels = null;
     }
 
     /**
@@ -289,7 +430,7 @@ public class State implements IState<State, Context, CallEdge> {
      */
     public void removeObject(ObjectLabel objlabel) {
         makeWritableStore();
-        store.remove(objlabel);
+        removeFromStore(objlabel);
     }
 
     /**
@@ -341,6 +482,7 @@ public class State implements IState<State, Context, CallEdge> {
      */
     public void setStoreDefault(Obj obj) {
         store_default = obj;
+        clearFork(); // the objects that are not in the store have changed
     }
 
     public void appendToQueueChain(Set<ObjectLabel> objectLabels, boolean implicit) {
@@ -428,6 +570,7 @@ public class State implements IState<State, Context, CallEdge> {
                 "You are going to put an object label in the queue "
                     + "that was not found in the store: "
                     + objectLabel.toString());
+        makeWritableQueue();
         Set<QueueObject> queueObjects = this.queue.get(objectLabel);
         QueueObject queueObject = new QueueObject(null, kind);
         if (queueObjects != null) {
@@ -450,6 +593,7 @@ public class State implements IState<State, Context, CallEdge> {
 
     public void addNewQueueObjectTo(ObjectLabel objectLabel,
                                     QueueObject queueObject) {
+        makeWritableQueue();
         Set<QueueObject> queueObjects = this.queue.get(objectLabel);
         if (queueObjects == null)
             throw new AnalysisException(
@@ -480,6 +624,7 @@ public class State implements IState<State, Context, CallEdge> {
 
     public void addQueueObjects(ObjectLabel objectLabel,
                                 Set<QueueObject> queueObjects) {
+        makeWritableQueue();
         this.queue.put(objectLabel, queueObjects);
     }
 
@@ -499,6 +644,7 @@ public class State implements IState<State, Context, CallEdge> {
                                   final boolean forceJoin,
                                   Value settledBy,
                                   final boolean restrictSchedule) {
+        makeWritableQueue();
         Set<QueueObject> queueObjects = this.queue.get(objectLabel);
         if (queueObjects == null)
             throw new AnalysisException(
@@ -574,6 +720,7 @@ public class State implements IState<State, Context, CallEdge> {
                                  boolean shouldResolve,
                                  Value settledBy,
                                  boolean restrictSchedule) {
+        makeWritableQueue();
         if (value.isMaybePromise()) {
             // TODO revisit
             Set<QueueObject> queueObjects = this.queue.get(
@@ -626,6 +773,7 @@ public class State implements IState<State, Context, CallEdge> {
                                  List<Value> args,
                                  final boolean onFulfill,
                                  final boolean implicit) {
+        makeWritableQueue();
         Set<QueueObject> queueObjects = this.queue.get(objectLabel);
         if (queueObjects == null)
             throw new AnalysisException(
@@ -799,6 +947,7 @@ public class State implements IState<State, Context, CallEdge> {
             callbackGraph.setCurrTimeIOChain(c);
             callbackGraph.commitScheduledPlans();
         }
+        callbackGraph.markBuilt();
         callbackGraph.resetStates();
         if (!Options.get().isCallbackSensitivityDisabled())
             return callbackGraph.getFirstCalls();
@@ -809,18 +958,23 @@ public class State implements IState<State, Context, CallEdge> {
      * Removes objects that are equal to the default object.
      */
     public void removeObjectsEqualToDefault(boolean default_none_at_entry) {
-        for (Iterator<Map.Entry<ObjectLabel, Obj>> it = store.entrySet().iterator(); it.hasNext(); ) {
-            Map.Entry<ObjectLabel, Obj> me = it.next();
+        List<ObjectLabel> removed = newList();
+        for (Map.Entry<ObjectLabel, Obj> me : store.entrySet()) {
             if (me.getValue().equals(store_default)) {
                 if (log.isDebugEnabled())
                     log.debug("removing object equal to the default: " + me.getKey());
-                it.remove();
+                removed.add(me.getKey());
             } else if (default_none_at_entry && store_default.isUnknown() && me.getValue().isSomeNone()) {
                 if (log.isDebugEnabled())
                     log.debug("removing none object: " + me.getKey());
-                it.remove();
+                removed.add(me.getKey());
             }
         }
+        if (removed.isEmpty())
+            return;
+        makeWritableStore();
+        for (ObjectLabel objlabel : removed)
+            removeFromStore(objlabel); // marks the objects as changed since the fork
     }
 
     /**
@@ -838,7 +992,7 @@ public class State implements IState<State, Context, CallEdge> {
     public void freezeBasisStore() {
         if (Options.get().isLazyDisabled()) {
             basis_store = store;
-            store = newMap();
+            setToEmptyStore();
             writable_store = true;
             log.debug("freezeBasisStore()");
         }
@@ -850,7 +1004,11 @@ public class State implements IState<State, Context, CallEdge> {
     public void makeWritableStore() {
         if (writable_store)
             return;
-        store = newMap(store);
+        if (store instanceof PersistentHashMap) {
+            freezeStore();
+            store = ((PersistentHashMap<ObjectLabel, Obj>) store).fork();
+        } else
+            store = newMap(store);
         writable_store = true;
         number_of_makewritable_store++;
     }
@@ -871,10 +1029,22 @@ public class State implements IState<State, Context, CallEdge> {
     private void makeWritableRegisters() {
         if (writable_registers)
             return;
-        registers = newList(registers);
+        registers = registers.clone();
         writable_registers = true;
     }
 
+    /**
+     * Makes the given register number available in the (writable) register array.
+     */
+    private void ensureRegister(int reg) {
+        if (reg < registers.length)
+            return;
+        int size = reg + 1;
+        if (block != null)
+            size = Math.max(size, block.getFunction().getMaxRegister() + 1);
+        registers = Arrays.copyOf(registers, size);
+    }
+
     /**
      * Returns the object labels that appear on the stack.
      * Not used if lazy propagation is enabled
@@ -916,6 +1086,9 @@ public class State implements IState<State, Context, CallEdge> {
     public static void reset() {
         number_of_states_created = 0;
         number_of_makewritable_store = 0;
+        number_of_propagate_calls = 0;
+        number_of_propagate_visited_objlabels = 0;
+        number_of_propagate_calls_with_fork = 0;
     }
 
     /**
@@ -925,13 +1098,49 @@ public class State implements IState<State, Context, CallEdge> {
         return number_of_makewritable_store;
     }
 
+    /**
+     * Returns the total number of joins of non-bottom states.
+     */
+    public static int getNumberOfPropagateCalls() {
+        return number_of_propagate_calls;
+    }
+
+    /**
+     * Returns the total number of object labels visited by joins of non-bottom states.
+     */
+    public static int getNumberOfPropagateVisitedObjectLabels() {
+        return number_of_propagate_visited_objlabels;
+    }
+
+    /**
+     * Returns the number of joins of non-bottom states that only visited the objects changed since a common fork.
+     */
+    public static int getNumberOfPropagateCallsWithFork() {
+        return number_of_propagate_calls_with_fork;
+    }
+
     /**
      * Clears modified flags for all values in the store.
      * Ignores the basis store.
      */
     private void clearModified() {
+        if (store instanceof PersistentHashMap) {
+            // update in place to preserve sharing with other states
+            makeWritableStore();
+            for (Map.Entry<ObjectLabel, Obj> xs : store.entrySet()) {
+                Obj obj = xs.getValue();
+                if (obj.isSomeModified()) {
+                    obj = new Obj(obj);
+                    obj.clearModified();
+                    writeToStore(xs.getKey(), obj);
+                }
+            }
+            log.debug("clearModified()");
+            return;
+        }
         Map<ObjectLabel, Obj> oldStore = store;
         store = newMap();
+        clearFork();
         for (Map.Entry<ObjectLabel, Obj> xs : oldStore.entrySet()) {
             Obj obj = xs.getValue();
             if (obj.isSomeModified()) {
@@ -953,12 +1162,13 @@ public class State implements IState<State, Context, CallEdge> {
         basis_store = null;
         summarized.clear();
         extras.setToBottom();
-        store = newMap();
+        setToEmptyStore();
         queue = new LinkedHashMap<>();
+        writable_queue = true;
         queueChain = null;
         scheduledCallbacks = null;
         writable_store = true;
-        registers = new ArrayList<>();
+        registers = NO_REGISTERS;
         writable_registers = true;
         stacked_objlabels = newSet();
         writable_stacked_objlabels = true;
@@ -1003,15 +1213,34 @@ public class State implements IState<State, Context, CallEdge> {
         makeWritableRegisters();
         makeWritableStackedObjects();
         boolean changed = execution_context.add(s.execution_context);
-        Set<ObjectLabel> labs = newSet();
-        labs.addAll(store.keySet());
-        labs.addAll(s.store.keySet());
+        Collection<ObjectLabel> labs;
+        if (store instanceof PersistentHashMap && s.store instanceof PersistentHashMap) {
+            // objects that are shared by the two stores need not be joined
+            labs = PersistentHashMap.diff((PersistentHashMap<ObjectLabel, Obj>) store, (PersistentHashMap<ObjectLabel, Obj>) s.store);
+        } else {
+            Set<ObjectLabel> labset = newSet();
+            if (StoreFork.collectChanges(store_fork, s.store_fork, labset)) {
+                // only objects that have changed in one of the states since their common fork need to be joined
+                if (dirty_objlabels != null)
+                    labset.addAll(dirty_objlabels);
+                if (s.dirty_objlabels != null)
+                    labset.addAll(s.dirty_objlabels);
+                number_of_propagate_calls_with_fork++;
+            } else {
+                labset.clear();
+                labset.addAll(store.keySet());
+                labset.addAll(s.store.keySet());
+            }
+            labs = labset;
+        }
+        number_of_propagate_calls++;
+        number_of_propagate_visited_objlabels += labs.size();
         for (ObjectLabel lab : labs)
             changed |= propagateObj(lab, s, lab, false);
         if (Options.get().isLazyDisabled())
             changed |= stacked_objlabels.addAll(s.stacked_objlabels);
         changed |= extras.propagate(s.extras);
-        boolean queueChanged = propagateQueue(s.queue);
+        boolean queueChanged = propagateQueue(s);
         if (!funentry)
             // TODO revisit
             changed |= queueChanged;
@@ -1026,21 +1255,21 @@ public class State implements IState<State, Context, CallEdge> {
                 this.scheduledCallbacks);
         this.scheduledCallbacks = newScheduledCallbacks;
         if (!funentry) {
-            for (int i = 0; i < registers.size() || i < s.registers.size(); i++) {
-                Value v1 = i < registers.size() ? registers.get(i) : null;
-                Value v2 = i < s.registers.size() ? s.registers.get(i) : null;
+            Value[] s_registers = s.registers;
+            if (s_registers.length > 0)
+                ensureRegister(s_registers.length - 1);
+            for (int i = 0; i < s_registers.length; i++) {
+                Value v1 = registers[i];
+                Value v2 = s_registers[i];
+                if (v2 == null)
+                    continue;
                 Value v;
                 if (v1 == null)
                     v = v2;
-                else if (v2 == null)
-                    v = v1;
                 else
                     v = UnknownValueResolver.join(v1, this, v2, s);
-                if (i < registers.size())
-                    registers.set(i, v);
-                else
-                    registers.add(v);
-                if (v != null && !v.equals(v1)) {
+                registers[i] = v;
+                if (!v.equals(v1)) {
                     changed = true;
                 }
             }
@@ -1054,6 +1283,7 @@ public class State implements IState<State, Context, CallEdge> {
             }
             store_default = s.store_default;
             store_default.freeze();
+            clearFork(); // the objects that are not in the store have changed
             changed = true;
         }
         if (log.isDebugEnabled()) {
@@ -1065,7 +1295,10 @@ public class State implements IState<State, Context, CallEdge> {
         return changed;
     }
 
-    private boolean propagateQueue(Map<ObjectLabel, Set<QueueObject>> queueFrom) {
+    private boolean propagateQueue(State queueFrom_state) {
+        Map<ObjectLabel, Set<QueueObject>> queueFrom = queueFrom_state.queue;
+        if (queueFrom == this.queue)
+            return false;
         boolean changed = false;
         Map<ObjectLabel, Set<QueueObject>> newQueue = new LinkedHashMap<>();
         for (Map.Entry<ObjectLabel, Set<QueueObject>> qs: queueFrom.entrySet()) {
@@ -1096,8 +1329,12 @@ public class State implements IState<State, Context, CallEdge> {
             }
 
         }
-        if (changed)
+        if (changed) {
+            // the new queue shares queue objects with both states
             this.queue = newQueue;
+            writable_queue = false;
+            queueFrom_state.writable_queue = false;
+        }
         return changed;
     }
 
@@ -1120,6 +1357,8 @@ public class State implements IState<State, Context, CallEdge> {
             // obj_from object is none, so nothing to do
             return false;
         }
+        if (state_from != this)
+            obj_from = recoverForPropagateObj(obj_to, state_from, objlabel_from, obj_from, modified);
         // join all properties from obj_from into obj_to
         boolean changed = false;
         Value default_array_property_to = obj_to.getDefaultArrayProperty();
@@ -1240,6 +1479,38 @@ public class State implements IState<State, Context, CallEdge> {
         return changed;
     }
 
+    /**
+     * Recovers the properties of the source object that {@link #propagateObj} would fully recover one at a time,
+     * using a single recovery operation.
+     * Only includes the properties where the recovery does not depend on the recovery of the destination object.
+     *
+     * @return the latest version of the source object
+     */
+    private static Obj recoverForPropagateObj(Obj obj_to, State state_from, ObjectLabel objlabel_from, Obj obj_from, boolean modified) {
+        List<ObjectProperty> props = newList();
+        if (obj_from.getDefaultArrayProperty().isUnknown() && (modified || !obj_to.getDefaultArrayProperty().isUnknown()))
+            props.add(ObjectProperty.makeDefaultArray(objlabel_from));
+        if (obj_from.getDefaultNonArrayProperty().isUnknown() && (modified || !obj_to.getDefaultNonArrayProperty().isUnknown()))
+            props.add(ObjectProperty.makeDefaultNonArray(objlabel_from));
+        for (Map.Entry<PKey, Value> me : obj_from.getProperties().entrySet()) {
+            if (!me.getValue().isUnknown())
+                continue;
+            Value v_to = obj_to.getProperty(me.getKey());
+            if (v_to.isUnknown() ? modified && obj_to.getProperties().containsKey(me.getKey()) : !v_to.isPolymorphic())
+                props.add(ObjectProperty.makeOrdinary(objlabel_from, me.getKey()));
+        }
+        if (obj_from.getInternalPrototype().isUnknown() && (obj_to.getInternalPrototype().isUnknown() ? modified : !obj_to.getInternalPrototype().isPolymorphic()))
+            props.add(ObjectProperty.makeInternalPrototype(objlabel_from));
+        if (obj_from.getInternalValue().isUnknown() && (obj_to.getInternalValue().isUnknown() ? modified : !obj_to.getInternalValue().isPolymorphic()))
+            props.add(ObjectProperty.makeInternalValue(objlabel_from));
+        if (obj_from.isScopeChainUnknown() && (modified || !obj_to.isScopeChainUnknown()))
+            props.add(ObjectProperty.makeInternalScope(objlabel_from));
+        if (props.size() < 2)
+            return obj_from; // nothing to gain
+        UnknownValueResolver.recover(props, state_from, false);
+        return state_from.getObject(objlabel_from, false);
+    }
+
     /**
      * Collection of property names.
      */
@@ -1611,6 +1882,7 @@ public class State implements IState<State, Context, CallEdge> {
 
     public void removeQueueObject(ObjectLabel singleton, ObjectLabel summary,
                                   boolean flag) {
+        makeWritableQueue();
         if (!this.queue.containsKey(singleton))
             return;
         this.queue.remove(singleton);
@@ -1633,6 +1905,7 @@ public class State implements IState<State, Context, CallEdge> {
     }
 
     public void summarizeQueue(ObjectLabel singleton, ObjectLabel summary) {
+        makeWritableQueue();
         Set<QueueObject> queueObjects = this.queue.get(singleton);
         if (queueObjects != null
                 && this.queue.containsKey(singleton)) {
@@ -1701,10 +1974,10 @@ public class State implements IState<State, Context, CallEdge> {
             makeWritableExecutionContext();
             execution_context.replaceObjectLabel(singleton, summary, cache);
             makeWritableRegisters();
-            for (int i = 0; i < registers.size(); i++) {
-                Value v = registers.get(i);
+            for (int i = 0; i < registers.length; i++) {
+                Value v = registers[i];
                 if (v != null) {
-                    registers.set(i, v.replaceObjectLabel(singleton, summary));
+                    registers[i] = v.replaceObjectLabel(singleton, summary);
                 }
             }
             extras.replaceObjectLabel(singleton, summary);
@@ -1715,7 +1988,7 @@ public class State implements IState<State, Context, CallEdge> {
                     stacked_objlabels.add(summary);
                 }
             if (getObject(summary, false).isUnknown() && store_default.isUnknown())
-                store.remove(summary);
+                removeFromStore(summary);
         }
         // now the old object is gone
         summarized.addDefinitelySummarized(singleton);
@@ -1749,7 +2022,7 @@ public class State implements IState<State, Context, CallEdge> {
             ObjectLabel summarylabel = objlabel.makeSummary();
             c.getMonitoring().visitRenameObject(c.getNode(), objlabel, summarylabel, this);
             propagateObj(summarylabel, this, objlabel, true);
-            store.remove(objlabel);
+            removeFromStore(objlabel);
             // update references
             Map<ScopeChain, ScopeChain> cache = new HashMap<>();
             for (ObjectLabel objlabel2 : newList(store.keySet())) {
@@ -1761,10 +2034,10 @@ public class State implements IState<State, Context, CallEdge> {
             makeWritableExecutionContext();
             execution_context.replaceObjectLabel(objlabel, summarylabel, cache);
             makeWritableRegisters();
-            for (int i = 0; i < registers.size(); i++) {
-                Value v = registers.get(i);
+            for (int i = 0; i < registers.length; i++) {
+                Value v = registers[i];
                 if (v != null) {
-                    registers.set(i, v.replaceObjectLabel(objlabel, summarylabel));
+                    registers[i] = v.replaceObjectLabel(objlabel, summarylabel);
                 }
             }
             extras.replaceObjectLabel(objlabel, summarylabel);
@@ -2051,7 +2324,7 @@ public class State implements IState<State, Context, CallEdge> {
         temp.removeAll(old.stacked_objlabels);
         if (!temp.isEmpty())
             b.append("\n      new stacked object labels: ").append(temp);
-        if (!registers.equals(old.registers))
+        if (!Arrays.equals(trimRegisters(registers), trimRegisters(old.registers)))
             b.append("\n      registers changed");
         // TODO: implement diff for StateExtras?
         return b.toString();
@@ -2072,9 +2345,9 @@ public class State implements IState<State, Context, CallEdge> {
 //        b.append("\n  Default object: ").append(store_default);
 //        b.append("\n  Store default: ").append(store_default);
         b.append("\n  Registers: ");
-        for (int i = 0; i < registers.size(); i++)
-            if (registers.get(i) != null)
-                b.append("\n    v").append(i).append("=").append(registers.get(i));
+        for (int i = 0; i < registers.length; i++)
+            if (registers[i] != null)
+                b.append("\n    v").append(i).append("=").append(registers[i]);
         b.append(extras);
         if (Options.get().isLazyDisabled())
             b.append("\n  Objects used by outer scopes: ").append(stacked_objlabels);
@@ -2287,7 +2560,7 @@ public class State implements IState<State, Context, CallEdge> {
         makeWritableStore();
         for (ObjectLabel objlabel : dead) {
             if (noneAtEntry(objlabel, entry_state))
-                store.remove(objlabel);
+                removeFromStore(objlabel);
             else
                 writeToStore(objlabel, Obj.makeNoneModified());
         }
@@ -2353,25 +2626,31 @@ public class State implements IState<State, Context, CallEdge> {
                         noneAtEntry(objlabel, entry_state)))
                     live.add(objlabel);
             }
-        LinkedHashSet<ObjectLabel> pending = new LinkedHashSet<>(live);
+        // the reachable object labels are tracked by their numbers
+        BitSet visited = new BitSet();
+        ArrayDeque<ObjectLabel> pending = new ArrayDeque<>(live);
+        for (ObjectLabel objlabel : live)
+            visited.set(objlabel.getId());
+        List<ObjectLabel> succs = newList();
         while (!pending.isEmpty()) {
-            Iterator<ObjectLabel> it = pending.iterator();
-            ObjectLabel objlabel = it.next();
-            it.remove();
-            live.add(objlabel);
-            for (ObjectLabel obj2 : getAllObjectLabels(objlabel))
-                if (!live.contains(obj2))
-                    pending.add(obj2);
+            ObjectLabel objlabel = pending.removeFirst();
+            succs.clear();
+            getAllObjectLabels(objlabel, succs);
+            for (ObjectLabel obj2 : succs)
+                if (!visited.get(obj2.getId())) {
+                    visited.set(obj2.getId());
+                    live.add(obj2);
+                    pending.addLast(obj2);
+                }
         }
         return live;
     }
 
     /**
-     * Returns the set of all object labels used in the given abstract object.
+     * Adds all object labels used in the given abstract object to the given collection.
      * Does not resolve unknown values.
      */
-    private Set<ObjectLabel> getAllObjectLabels(ObjectLabel objlabel) {
-        Set<ObjectLabel> objlabels = newSet();
+    private void getAllObjectLabels(ObjectLabel objlabel, Collection<ObjectLabel> objlabels) {
         Obj fo = getObject(objlabel, false);
         for (Value v : fo.getProperties().values())
             objlabels.addAll(v.getAllObjectLabels());
@@ -2382,7 +2661,6 @@ public class State implements IState<State, Context, CallEdge> {
         if (!fo.isScopeChainUnknown())
             for (Set<ObjectLabel> ls : ScopeChain.iterable(fo.getScopeChain()))
                 objlabels.addAll(ls);
-        return objlabels;
     }
 
     /**
@@ -2428,9 +2706,8 @@ public class State implements IState<State, Context, CallEdge> {
         if (value.isUnknown())
             throw new AnalysisException("Unexpected 'unknown'");
         makeWritableRegisters();
-        while (reg >= registers.size())
-            registers.add(null);
-        registers.set(reg, value);
+        ensureRegister(reg);
+        registers[reg] = value;
         if (log.isDebugEnabled())
             log.debug("writeRegister(v" + reg + "," + value + ")");
     }
@@ -2439,10 +2716,10 @@ public class State implements IState<State, Context, CallEdge> {
      * Removes the given register (strong update).
      */
     public void removeRegister(int reg) {
+        if (reg >= registers.length)
+            return; // already undefined
         makeWritableRegisters();
-        while (reg >= registers.size())
-            registers.add(null);
-        registers.set(reg, null);
+        registers[reg] = null;
         if (log.isDebugEnabled())
             log.debug("removeRegister(v" + reg + ")");
     }
@@ -2451,7 +2728,7 @@ public class State implements IState<State, Context, CallEdge> {
      * Returns true if the given register is defined.
      */
     public boolean isRegisterDefined(int reg) {
-        return reg >= 0 && reg < registers.size() && registers.get(reg) != null;
+        return reg >= 0 && reg < registers.length && registers[reg] != null;
     }
 
     /**
@@ -2459,10 +2736,10 @@ public class State implements IState<State, Context, CallEdge> {
      */
     public Value readRegister(int reg) {
         Value res;
-        if (reg >= registers.size())
+        if (reg >= registers.length)
             res = null;
         else
-            res = registers.get(reg);
+            res = registers[reg];
         if (res == null)
             throw new AnalysisException("Reading undefined register v" + reg);
         if (log.isDebugEnabled())
@@ -2472,19 +2749,30 @@ public class State implements IState<State, Context, CallEdge> {
 
     /**
      * Returns the list of registers.
+     * The list is a fixed-size view of the register array.
      */
     public List<Value> getRegisters() {
-        return registers;
+        return Arrays.asList(registers);
     }
 
     /**
      * Sets the list of registers.
      */
     public void setRegisters(List<Value> registers) {
-        this.registers = registers;
+        this.registers = registers.toArray(NO_REGISTERS);
         writable_registers = true;
     }
 
+    /**
+     * Returns the given register array without trailing undefined registers.
+     */
+    private static Value[] trimRegisters(Value[] registers) {
+        int n = registers.length;
+        while (n > 0 && registers[n - 1] == null)
+            n--;
+        return n == registers.length ? registers : Arrays.copyOf(registers, n);
+    }
+
     /**
      * Adds object labels used in current registers and execution
      * context to stacked object labels.
@@ -2504,26 +2792,21 @@ public class State implements IState<State, Context, CallEdge> {
      */
     public void clearRegisters() {
         if (writable_registers)
-            registers.clear();
-        else {
-            registers = Collections.emptyList();
-            writable_registers = false;
-        }
+            Arrays.fill(registers, null);
+        else
+            registers = NO_REGISTERS;
     }
 
     /**
      * Clears the registers, starting from {@link AbstractNode#FIRST_ORDINARY_REG}, and excluding property list values.
      */
     public void clearOrdinaryRegisters() {
-        List<Value> new_registers = newList();
-        int reg = 0;
-        for (Value v : registers) {
-            if (reg++ >= AbstractNode.FIRST_ORDINARY_REG && v != null && !v.isExtendedScope())
-                v = null;
-            new_registers.add(v);
-        }
-        registers = new_registers;
-        writable_registers = true;
+        makeWritableRegisters();
+        for (int reg = AbstractNode.FIRST_ORDINARY_REG; reg < registers.length; reg++) {
+            Value v = registers[reg];
+            if (v != null && !v.isExtendedScope())
+                registers[reg] = null;
+        }
     }
 
     /**
@@ -2554,7 +2837,7 @@ public class State implements IState<State, Context, CallEdge> {
             this.callbackContext = null;
             if (s == null) {
                 // set everything to unknown
-                store = newMap();
+                setToEmptyStore();
                 writable_store = true;
                 store_default = Obj.makeUnknown();
             } else {
@@ -2572,7 +2855,7 @@ public class State implements IState<State, Context, CallEdge> {
                 }
                 // remove all-unknown objects
                 Map<ObjectLabel, Obj> oldStore = store;
-                store = newMap();
+                setToEmptyStore();
                 for (Map.Entry<ObjectLabel, Obj> xs : oldStore.entrySet())
                     if (!xs.getValue().isUnknown())
                         writeToStore(xs.getKey(), xs.getValue());
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.lattice;
+
+import java.util.Set;
+
+/**
+ * Point where a store has been copied by {@link State#clone()}.
+ * All states with the same fork had equal stores at the time of the fork.
+ * The forks form a tree, where each fork records the objects that were changed since its parent fork,
+ * so the objects that may differ between two states can be found from their nearest common fork.
+ */
+final class StoreFork {
+
+    /**
+     * Maximal depth of the fork tree, deeper forks are made roots to bound the memory retained by the tree.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * Maximal number of changed objects recorded in a fork, forks with more changes are made roots.
+     */
+    private static final int MAX_CHANGED = 64;
+
+    private final StoreFork parent;
+
+    private final int depth;
+
+    /**
+     * Labels of objects that were written or removed between the parent fork and this fork, null if none.
+     */
+    private final Set<ObjectLabel> changed;
+
+    /**
+     * Constructs a new fork of a store that was last forked at the given fork, or null if unknown.
+     *
+     * @param changed labels of the objects changed since the previous fork, null if none
+     */
+    StoreFork(StoreFork previous, Set<ObjectLabel> changed) {
+        if (previous == null || previous.depth >= MAX_DEPTH || (changed != null && changed.size() > MAX_CHANGED)) {
+            this.parent = null;
+            this.depth = 0;
+            this.changed = null;
+        } else {
+            this.parent = previous;
+            this.depth = previous.depth + 1;
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * Adds the labels of the objects that may have changed between the two forks to the given set.
+     *
+     * @return false if the forks have no common ancestor
+     */
+    static boolean collectChanges(StoreFork f1, StoreFork f2, Set<ObjectLabel> res) {
+        if (f1 == null || f2 == null)
+            return false;
+        while (f1.depth > f2.depth)
+            f1 = f1.up(res);
+        while (f2.depth > f1.depth)
+            f2 = f2.up(res);
+        while (f1 != f2) {
+            if (f1.parent == null || f2.parent == null)
+                return false;
+            f1 = f1.up(res);
+            f2 = f2.up(res);
+        }
+        return true;
+    }
+
+    private StoreFork up(Set<ObjectLabel> res) {
+        if (changed != null)
+            res.addAll(changed);
+        return parent;
+    }
+}
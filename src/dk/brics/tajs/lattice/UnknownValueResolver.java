@@ -33,10 +33,12 @@ import org.apache.log4j.Logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newMap;
 import static dk.brics.tajs.util.Collections.newSet;
 
@@ -124,7 +126,7 @@ public final class UnknownValueResolver {
          * The internal representation groups the callee nodes with same function entry.
          */
         private Map<RGNode, // target or call node
-                Map<Pair<Context, RGNode>, // edge context and callee function entry (groups callee nodes with same function entry)
+                Map<Pair<CallEdge, RGNode>, // call edge and callee function entry (groups callee nodes with same function entry)
                         Set<RGNode>>> graph; // callee node
 
         private Set<RGNode> roots;
@@ -176,6 +178,14 @@ public final class UnknownValueResolver {
                 log.debug("adding node " + n);
         }
 
+        /**
+         * Adds a node (caller) unless already present and updates the pending list accordingly.
+         */
+        public void addNodeIfAbsent(RGNode n) {
+            if (graph == null || !graph.containsKey(n))
+                addNode(n);
+        }
+
         /**
          * Checks whether the pending list is empty.
          */
@@ -211,11 +221,11 @@ public final class UnknownValueResolver {
                 AbstractNode call_node,
                 Context caller_context,
                 ObjectProperty caller_prop,
-                Context edge_context,
+                CallEdge call_edge,
                 RGNode callee) {
             prepare();
             RGNode caller_n = new RGNode(call_node, caller_context, caller_prop);
-            Map<Pair<Context, RGNode>, Set<RGNode>> t2 = graph.get(caller_n);
+            Map<Pair<CallEdge, RGNode>, Set<RGNode>> t2 = graph.get(caller_n);
             if (t2 == null) {
                 t2 = newMap();
                 graph.put(caller_n, t2);
@@ -225,7 +235,7 @@ public final class UnknownValueResolver {
             }
             BlockAndContext<Context> ce = BlockAndContext.makeEntry(callee.getNode().getBlock(), callee.getContext());
             RGNode callee_functionentry_n = new RGNode(ce.getBlock().getFirstNode(), ce.getContext(), callee.getObjectProperty());
-            Collections.addToMapSet(t2, Pair.make(edge_context, callee_functionentry_n), callee);
+            Collections.addToMapSet(t2, Pair.make(call_edge, callee_functionentry_n), callee);
             if (log.isDebugEnabled())
                 log.debug("adding edge from node " + caller_n + " to node " + callee);
         }
@@ -233,7 +243,7 @@ public final class UnknownValueResolver {
         /**
          * Returns the callees, grouped by function entry location.
          */
-        public Set<Entry<Pair<Context, RGNode>, Set<RGNode>>> getCallees(RGNode n) {
+        public Set<Entry<Pair<CallEdge, RGNode>, Set<RGNode>>> getCallees(RGNode n) {
             return graph != null ? graph.get(n).entrySet() :
                     java.util.Collections.emptySet();
         }
@@ -278,29 +288,51 @@ public final class UnknownValueResolver {
      * Generic function for recovering 'unknown' properties.
      */
     private static Obj recover(State s, ObjectProperty prop, boolean partial) {
-        Value value_at_s = getValue(s, prop);
-        if (!partial && value_at_s != null && value_at_s.isPolymorphic() && value_at_s.isMaybeAbsent() && !value_at_s.isMaybePresent()) { // optimization only
-            Obj res = s.getObject(prop.getObjectLabel(), true);
-            res.setValue(prop, Value.makeAbsent());
-            return res;
-        }
-        ObjectPropertyPair entry_prop = toEntry(s, prop);
-        if (partial && entry_prop.prop1 != null && entry_prop.prop2 != null) {
-            if (log.isDebugEnabled())
-                log.debug("switching from partial to full recover");
-            return recover(s, prop, false);
+        recover(s, java.util.Collections.singletonList(prop), partial);
+        return s.getObject(prop.getObjectLabel(), false);
+    }
+
+    /**
+     * Generic function for recovering 'unknown' properties.
+     * The properties are recovered using a single recovery graph.
+     */
+    private static void recover(State s, List<ObjectProperty> props, boolean partial) {
+        List<ObjectProperty> recover_props = newList();
+        List<Value> values_at_s = newList();
+        List<ObjectPropertyPair> entry_props = newList();
+        for (ObjectProperty prop : props) {
+            Value value_at_s = getValue(s, prop);
+            if (!partial && value_at_s != null && value_at_s.isPolymorphic() && value_at_s.isMaybeAbsent() && !value_at_s.isMaybePresent()) { // optimization only
+                s.getObject(prop.getObjectLabel(), true).setValue(prop, Value.makeAbsent());
+                continue;
+            }
+            ObjectPropertyPair entry_prop = toEntry(s, prop);
+            if (partial && entry_prop.prop1 != null && entry_prop.prop2 != null) {
+                if (log.isDebugEnabled())
+                    log.debug("switching from partial to full recover");
+                recover(s, java.util.Collections.singletonList(prop), false);
+                continue;
+            }
+            recover_props.add(prop);
+            values_at_s.add(value_at_s);
+            entry_props.add(entry_prop);
         }
+        if (recover_props.isEmpty())
+            return;
         if (log.isDebugEnabled())
-            log.debug((partial ? "partially" : "fully") + " recovering " + prop + " at block " + s.getBasicBlock().getIndex() + " context " + s.getContext());
+            log.debug((partial ? "partially" : "fully") + " recovering " + recover_props + " at block " + s.getBasicBlock().getIndex() + " context " + s.getContext());
         GenericSolver<State, Context, CallEdge, ? extends ILatticeMonitoring, ?>.SolverInterface c = s.getSolverInterface();
-        c.getMonitoring().visitUnknownValueResolve(s.getBasicBlock().getFirstNode(), partial, c.isScanning());
+        for (int i = 0; i < recover_props.size(); i++)
+            c.getMonitoring().visitUnknownValueResolve(s.getBasicBlock().getFirstNode(), partial, c.isScanning());
         // build recovery graph
         RecoveryGraph g = new RecoveryGraph();
         State entry_state = getEntryState(s);
-        if (entry_prop.prop1 != null && !isOK(entry_state, entry_prop.prop1, partial))
-            g.addNode(new RGNode(s.getBasicBlock().getFirstNode(), s.getContext(), entry_prop.prop1));
-        if (entry_prop.prop2 != null && !isOK(entry_state, entry_prop.prop2, partial))
-            g.addNode(new RGNode(s.getBasicBlock().getFirstNode(), s.getContext(), entry_prop.prop2));
+        for (ObjectPropertyPair entry_prop : entry_props) {
+            if (entry_prop.prop1 != null && !isOK(entry_state, entry_prop.prop1, partial))
+                g.addNodeIfAbsent(new RGNode(s.getBasicBlock().getFirstNode(), s.getContext(), entry_prop.prop1));
+            if (entry_prop.prop2 != null && !isOK(entry_state, entry_prop.prop2, partial))
+                g.addNodeIfAbsent(new RGNode(s.getBasicBlock().getFirstNode(), s.getContext(), entry_prop.prop2));
+        }
         while (!g.pendingIsEmpty()) {
             RGNode n = g.getNextPending();
             BlockAndContext<Context> n_entry = BlockAndContext.makeEntry(n.getNode().getBlock(), n.getContext());
@@ -309,9 +341,9 @@ public final class UnknownValueResolver {
             if (!partial)
                 g.setPolymorphic(n_entry, n.getObjectProperty(), getValue(callee_functionentry_state, n.getObjectProperty()));
             // iterate through incoming call edges
-            for (CallGraph.ReverseEdge<Context> cs : c.getAnalysisLatticeElement().getCallGraph().getSources(n_entry)) {
-                CallEdge call_edge = c.getAnalysisLatticeElement().getCallGraph().getCallEdge(cs.getCallNode(), cs.getCallerContext(), n_entry.getBlock(), cs.getEdgeContext());
-                State call_edge_state = call_edge.getState();
+            for (Pair<CallGraph.ReverseEdge<Context>, CallEdge> in : c.getAnalysisLatticeElement().getCallGraph().getIncomingCallEdges(n_entry)) {
+                CallGraph.ReverseEdge<Context> cs = in.getFirst();
+                State call_edge_state = in.getSecond().getState();
                 ObjectProperty call_edge_prop = n.getObjectProperty();
                 if (isOK(call_edge_state, call_edge_prop, partial)) // value is available at the call edge
                     g.addRoot(n);
@@ -321,12 +353,18 @@ public final class UnknownValueResolver {
                     if (partial && caller_functionentry_prop.prop1 != null && caller_functionentry_prop.prop2 != null) {
                         if (log.isDebugEnabled())
                             log.debug("switching from partial to full recover");
-                        return recover(s, prop, false);
+                        if (recover_props.size() == 1)
+                            recover(s, recover_props, false);
+                        else // find out which of the properties need full recovery
+                            for (ObjectProperty prop : recover_props)
+                                if (!isOK(s, prop, partial))
+                                    recover(s, java.util.Collections.singletonList(prop), partial);
+                        return;
                     }
                     if (caller_functionentry_prop.prop1 != null)
-                        addRootOrPredecessors(n, cs.getCallNode(), cs.getCallerContext(), cs.getEdgeContext(), caller_functionentry_state, caller_functionentry_prop.prop1, g, partial);
+                        addRootOrPredecessors(n, cs.getCallNode(), cs.getCallerContext(), in.getSecond(), caller_functionentry_state, caller_functionentry_prop.prop1, g, partial);
                     if (caller_functionentry_prop.prop2 != null)
-                        addRootOrPredecessors(n, cs.getCallNode(), cs.getCallerContext(), cs.getEdgeContext(), caller_functionentry_state, caller_functionentry_prop.prop2, g, partial);
+                        addRootOrPredecessors(n, cs.getCallNode(), cs.getCallerContext(), in.getSecond(), caller_functionentry_state, caller_functionentry_prop.prop2, g, partial);
                 }
             }
         }
@@ -336,9 +374,9 @@ public final class UnknownValueResolver {
             State callee_functionentry_state = getEntryState(c, n.getContext(), n.getNode());
             boolean changed = false;
             BlockAndContext<Context> n_entry = BlockAndContext.makeEntry(n.getNode().getBlock(), n.getContext());
-            for (CallGraph.ReverseEdge<Context> cs : c.getAnalysisLatticeElement().getCallGraph().getSources(n_entry)) {
-                CallEdge call_edge = c.getAnalysisLatticeElement().getCallGraph().getCallEdge(cs.getCallNode(), cs.getCallerContext(), n_entry.getBlock(), cs.getEdgeContext());
-                State call_edge_state = call_edge.getState();
+            for (Pair<CallGraph.ReverseEdge<Context>, CallEdge> in : c.getAnalysisLatticeElement().getCallGraph().getIncomingCallEdges(n_entry)) {
+                CallGraph.ReverseEdge<Context> cs = in.getFirst();
+                State call_edge_state = in.getSecond().getState();
                 ObjectProperty call_edge_prop = n.getObjectProperty();
                 if (isOK(call_edge_state, call_edge_prop, partial)) { // recover from call edge
                     Value poly_at_n_entry = partial ? null : g.getPolymorphic(n_entry.getBlock().getFirstNode(), n_entry.getContext(), n.getObjectProperty());
@@ -365,13 +403,10 @@ public final class UnknownValueResolver {
             RGNode n = pending_list2.remove();
             pending2.remove(n);
             State n_functionentry_state = getEntryState(c, n.getContext(), n.getNode());
-            for (Entry<Pair<Context, RGNode>,
+            for (Entry<Pair<CallEdge, RGNode>,
                     Set<RGNode>> me : g.getCallees(n)) {
                 RGNode callee_functionentry_n = me.getKey().getSecond();
-                Context edge_context = me.getKey().getFirst();
-                CallEdge call_edge = c.getAnalysisLatticeElement().getCallGraph().getCallEdge(n.getNode(), n.getContext(),
-                        callee_functionentry_n.getNode().getBlock(), edge_context);
-                State call_edge_state = call_edge.getState();
+                State call_edge_state = me.getKey().getFirst().getState();
                 State callee_functionentry_state = c.getAnalysisLatticeElement().getState(callee_functionentry_n.getNode().getBlock(), callee_functionentry_n.getContext());
                 ObjectProperty call_edge_prop = callee_functionentry_n.getObjectProperty();
                 Value value_at_call_edge = partial ? null : getValue(call_edge_state, call_edge_prop);
@@ -399,11 +434,14 @@ public final class UnknownValueResolver {
             }
         }
         // propagate to the current state (necessary for materializing all properties and for abstract gc)
-        if (entry_prop.prop1 != null)
-            propagate(entry_state, entry_prop.prop1, s, prop, s.getSummarized(), partial, false, value_at_s);
-        if (entry_prop.prop2 != null)
-            propagate(entry_state, entry_prop.prop2, s, prop, s.getSummarized(), partial, false, value_at_s);
-        return s.getObject(prop.getObjectLabel(), false);
+        for (int i = 0; i < recover_props.size(); i++) {
+            ObjectProperty prop = recover_props.get(i);
+            ObjectPropertyPair entry_prop = entry_props.get(i);
+            if (entry_prop.prop1 != null)
+                propagate(entry_state, entry_prop.prop1, s, prop, s.getSummarized(), partial, false, values_at_s.get(i));
+            if (entry_prop.prop2 != null)
+                propagate(entry_state, entry_prop.prop2, s, prop, s.getSummarized(), partial, false, values_at_s.get(i));
+        }
     }
 
     /**
@@ -412,14 +450,14 @@ public final class UnknownValueResolver {
      * @param n                          recovery graph node being visited
      * @param call_node                  an incoming function call
      * @param caller_context             the context at the call node
-     * @param edge_context               the context at the edge
+     * @param call_edge                  the call edge
      * @param caller_functionentry_state abstract state at the function entry of the caller
      * @param caller_functionentry_prop  the relevant property at the function entry of the caller
      */
     private static void addRootOrPredecessors(RGNode n,
                                               AbstractNode call_node,
                                               Context caller_context,
-                                              Context edge_context,
+                                              CallEdge call_edge,
                                               State caller_functionentry_state,
                                               ObjectProperty caller_functionentry_prop,
                                               RecoveryGraph g,
@@ -427,7 +465,7 @@ public final class UnknownValueResolver {
         if (isOK(caller_functionentry_state, caller_functionentry_prop, partial)) // value is available at the function entry of the caller
             g.addRoot(n);
         else
-            g.addNodeAndEdge(call_node, caller_context, caller_functionentry_prop, edge_context, n); // proceed backward through call graph
+            g.addNodeAndEdge(call_node, caller_context, caller_functionentry_prop, call_edge, n); // proceed backward through call graph
     }
 
     /**
@@ -631,6 +669,21 @@ public final class UnknownValueResolver {
         return c.getAnalysisLatticeElement().getState(BlockAndContext.makeEntry(node.getBlock(), context));
     }
 
+    /**
+     * Recovers the given properties, which may belong to different objects, using a single traversal of the call graph.
+     * Properties that need no recovery are ignored.
+     * Afterwards, the wrappers below return the recovered values without further recovery.
+     * Should not be invoked with an INTERNAL_SCOPE property reference if partial.
+     */
+    public static void recover(Collection<ObjectProperty> props, State s, boolean partial) {
+        List<ObjectProperty> recover_props = newList();
+        for (ObjectProperty prop : props)
+            if (!isOK(s, prop, partial))
+                recover_props.add(prop);
+        if (!recover_props.isEmpty())
+            recover(s, recover_props, partial && !Options.get().isPolymorphicDisabled());
+    }
+
     /**
      * Wrapper for {@link Obj#getProperty(PKey)}.
      * Never returns 'unknown'.
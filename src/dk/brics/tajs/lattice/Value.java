@@ -224,8 +224,6 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
      */
     private int hashcode;
 
-    private static boolean canonicalizing; // set during canonicalization
-
     static {
         init();
     }
@@ -321,17 +319,16 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
             if (Options.get().isPolymorphicDisabled() && v.isPolymorphic())
                 throw new AnalysisException("Unexpected polymorphic value");
         }
-        canonicalizing = true;
         if ((v.flags & NUM) == NUM_ZERO) {
             v.flags = v.flags & ~NUM;
             v.num = 0.0;
         }
         if (v.object_labels != null)
-            v.object_labels = Canonicalizer.get().canonicalizeSet(v.object_labels);
+            v.object_labels = Canonicalizer.get().canonicalize(ObjectLabelSet.make(v.object_labels));
         if (v.getters != null)
-            v.getters = Canonicalizer.get().canonicalizeSet(v.getters);
+            v.getters = Canonicalizer.get().canonicalize(ObjectLabelSet.make(v.getters));
         if (v.setters != null)
-            v.setters = Canonicalizer.get().canonicalizeSet(v.setters);
+            v.setters = Canonicalizer.get().canonicalize(ObjectLabelSet.make(v.setters));
         v.hashcode = v.flags * 17
                 + (v.var != null ? v.var.hashCode() : 0)
                 + (v.num != null ? v.num.hashCode() : 0)
@@ -339,9 +336,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
                 + (v.object_labels != null ? v.object_labels.hashCode() : 0)
                 + (v.getters != null ? v.getters.hashCode() : 0)
                 + (v.setters != null ? v.setters.hashCode() : 0);
-        Value cv = Canonicalizer.get().canonicalize(v);
-        canonicalizing = false;
-        return cv;
+        return Canonicalizer.get().canonicalize(v);
     }
 
     /**
@@ -1061,8 +1056,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
                     object_labels = v.object_labels;
                 } else if (!object_labels.containsAll(v.object_labels)) {
                     modified = true;
-                    object_labels = newSet(object_labels);
-                    object_labels.addAll(v.object_labels);
+                    object_labels = ObjectLabelSet.union(object_labels, v.object_labels);
                 }
             }
             if (v.getters != null) {
@@ -1071,8 +1065,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
                     getters = v.getters;
                 } else if (!getters.containsAll(v.getters)) {
                     modified = true;
-                    getters = newSet(getters);
-                    getters.addAll(v.getters);
+                    getters = ObjectLabelSet.union(getters, v.getters);
                 }
             }
             if (v.setters != null) {
@@ -1081,8 +1074,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
                     setters = v.setters;
                 } else if (!setters.containsAll(v.setters)) {
                     modified = true;
-                    setters = newSet(setters);
-                    setters.addAll(v.setters);
+                    setters = ObjectLabelSet.union(setters, v.setters);
                 }
             }
         }
@@ -1099,11 +1091,19 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
 
     /**
      * Checks whether the given object is equal to this one.
+     * Values are canonicalized, so this is object identity.
      */
     @Override
     public boolean equals(Object obj) {
-        if (!canonicalizing) // use object identity as equality, except during canonicalization
-            return obj == this;
+        return obj == this;
+    }
+
+    /**
+     * Checks whether the given object is structurally equal to this one.
+     * Only used during canonicalization.
+     */
+    @Override
+    public boolean equalsStructurally(Object obj) {
         if (obj == this)
             return true;
         if (!(obj instanceof Value))
@@ -3204,9 +3204,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
     public Set<ObjectLabel> getObjectLabels() {
         if (object_labels == null)
             return Collections.emptySet();
-        if (Options.get().isDebugOrTestEnabled())
-            return Collections.unmodifiableSet(object_labels);
-        return object_labels;
+        return object_labels; // immutable
     }
 
     public ObjectLabel getObjectLabelUnique() {
@@ -3271,9 +3269,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
     public Set<ObjectLabel> getGetters() {
         if (getters == null)
             return Collections.emptySet();
-        if (Options.get().isDebugOrTestEnabled())
-            return Collections.unmodifiableSet(getters);
-        return getters;
+        return getters; // immutable
     }
 
     /**
@@ -3283,9 +3279,7 @@ public final class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmu
     public Set<ObjectLabel> getSetters() {
         if (setters == null)
             return Collections.emptySet();
-        if (Options.get().isDebugOrTestEnabled())
-            return Collections.unmodifiableSet(setters);
-        return setters;
+        return setters; // immutable
     }
 
     /**
@@ -38,27 +38,101 @@ import dk.brics.tajs.util.AnalysisException;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newMap;
 import static dk.brics.tajs.util.Collections.newSet;
 
 /**
  * Composite, delegating, implementation of IAnalysisMonitoring.
  * Enables multiple, independent IAnalysisMonitoring implementations to be used together.
+ * <p>
+ * The monitors are kept in a flat array (nested composites are flattened) and are notified in order.
+ * For the events that are emitted for every node transfer, propagation and join, the monitors that do not
+ * override the corresponding method of {@link DefaultAnalysisMonitoring} are filtered away when the composite is built,
+ * so such events only reach the monitors that actually observe them.
  */
 public class CompositeMonitoring implements IAnalysisMonitoring {
 
-    private final IAnalysisMonitoring m1;
+    private final IAnalysisMonitoring[] monitors;
 
-    private final IAnalysisMonitoring m2;
+    private final IAnalysisMonitoring[] nodeTransferPreMonitors;
+
+    private final IAnalysisMonitoring[] nodeTransferPostMonitors;
+
+    private final IAnalysisMonitoring[] blockTransferPreMonitors;
+
+    private final IAnalysisMonitoring[] blockTransferPostMonitors;
+
+    private final IAnalysisMonitoring[] propagationPreMonitors;
+
+    private final IAnalysisMonitoring[] propagationPostMonitors;
+
+    private final IAnalysisMonitoring[] joinMonitors;
+
+    private final IAnalysisMonitoring[] newFlowMonitors;
+
+    private final IAnalysisMonitoring[] propertyReadMonitors;
+
+    private final IAnalysisMonitoring[] readVariableMonitors;
+
+    private final IAnalysisMonitoring[] variableAsReadMonitors;
+
+    private final IAnalysisMonitoring[] newObjectMonitors;
+
+    private final IAnalysisMonitoring[] renameObjectMonitors;
 
     public CompositeMonitoring(IAnalysisMonitoring m1, IAnalysisMonitoring m2) {
-        this.m1 = m1;
-        this.m2 = m2;
+        this(Arrays.asList(m1, m2));
+    }
+
+    private CompositeMonitoring(List<IAnalysisMonitoring> ms) {
+        List<IAnalysisMonitoring> flat = newList();
+        for (IAnalysisMonitoring m : ms) {
+            if (m instanceof CompositeMonitoring) {
+                flat.addAll(Arrays.asList(((CompositeMonitoring) m).monitors));
+            } else {
+                flat.add(m);
+            }
+        }
+        monitors = flat.toArray(new IAnalysisMonitoring[0]);
+        nodeTransferPreMonitors = getOverriding("visitNodeTransferPre", AbstractNode.class, State.class);
+        nodeTransferPostMonitors = getOverriding("visitNodeTransferPost", AbstractNode.class, State.class);
+        blockTransferPreMonitors = getOverriding("visitBlockTransferPre", BasicBlock.class, State.class);
+        blockTransferPostMonitors = getOverriding("visitBlockTransferPost", BasicBlock.class, State.class);
+        propagationPreMonitors = getOverriding("visitPropagationPre", BlockAndContext.class, BlockAndContext.class);
+        propagationPostMonitors = getOverriding("visitPropagationPost", BlockAndContext.class, BlockAndContext.class, boolean.class);
+        joinMonitors = getOverriding("visitJoin");
+        newFlowMonitors = getOverriding("visitNewFlow", BasicBlock.class, Context.class, State.class, String.class, String.class);
+        propertyReadMonitors = getOverriding("visitPropertyRead", AbstractNode.class, Set.class, PKeys.class, State.class, boolean.class);
+        readVariableMonitors = getOverriding("visitReadVariable", ReadVariableNode.class, Value.class, State.class);
+        variableAsReadMonitors = getOverriding("visitVariableAsRead", AbstractNode.class, String.class, Value.class, State.class);
+        newObjectMonitors = getOverriding("visitNewObject", AbstractNode.class, ObjectLabel.class, State.class);
+        renameObjectMonitors = getOverriding("visitRenameObject", AbstractNode.class, ObjectLabel.class, ObjectLabel.class, State.class);
+    }
+
+    /**
+     * Returns the monitors that may observe the given event.
+     * A subclass of {@link DefaultAnalysisMonitoring} that inherits the empty default implementation of the event is left out;
+     * all other monitors are kept.
+     */
+    private IAnalysisMonitoring[] getOverriding(String event, Class<?>... parameterTypes) {
+        List<IAnalysisMonitoring> res = newList();
+        for (IAnalysisMonitoring m : monitors) {
+            if (m instanceof DefaultAnalysisMonitoring) {
+                try {
+                    if (m.getClass().getMethod(event, parameterTypes).getDeclaringClass() == DefaultAnalysisMonitoring.class)
+                        continue;
+                } catch (NoSuchMethodException e) {
+                    throw new AnalysisException("No monitoring event " + event, e);
+                }
+            }
+            res.add(m);
+        }
+        return res.toArray(new IAnalysisMonitoring[0]);
     }
 
     @SuppressWarnings("unused")
@@ -67,71 +141,75 @@ public class CompositeMonitoring implements IAnalysisMonitoring {
     }
 
     public static IAnalysisMonitoring buildFromList(List<IAnalysisMonitoring> monitors) {
-        LinkedList<IAnalysisMonitoring> linked = new LinkedList<>();
-        linked.addAll(monitors);
-        return buildFromList(linked, CompositeMonitoring::new);
-    }
-
-    protected static IAnalysisMonitoring buildFromList(LinkedList<IAnalysisMonitoring> monitors, Factory<IAnalysisMonitoring> f) {
         if (monitors.isEmpty()) {
             throw new AnalysisException("Trying to create empty composite monitor?!");
         }
-        IAnalysisMonitoring head = monitors.removeFirst();
-        if (monitors.isEmpty()) {
-            return head;
+        if (monitors.size() == 1) {
+            return monitors.get(0);
         }
-        return f.build(head, buildFromList(monitors, f));
+        return new CompositeMonitoring(monitors);
     }
 
     @Override
     public void addMessage(AbstractNode n, Message.Status status, Message.Severity severity, String msg) {
-        m1.addMessage(n, status, severity, msg);
-        m2.addMessage(n, status, severity, msg);
+        for (IAnalysisMonitoring m : monitors) {
+            m.addMessage(n, status, severity, msg);
+        }
     }
 
     @Override
     public void addMessage(AbstractNode n, Message.Severity severity, String msg) {
-        m1.addMessage(n, severity, msg);
-        m2.addMessage(n, severity, msg);
+        for (IAnalysisMonitoring m : monitors) {
+            m.addMessage(n, severity, msg);
+        }
     }
 
     @Override
     public void addMessage(AbstractNode n, Message.Severity severity, String key, String msg) {
-        m1.addMessage(n, severity, key, msg);
-        m2.addMessage(n, severity, key, msg);
+        for (IAnalysisMonitoring m : monitors) {
+            m.addMessage(n, severity, key, msg);
+        }
     }
 
     @Override
     public void addMessageInfo(AbstractNode n, Message.Severity severity, String msg) {
-        m1.addMessageInfo(n, severity, msg);
-        m2.addMessageInfo(n, severity, msg);
+        for (IAnalysisMonitoring m : monitors) {
+            m.addMessageInfo(n, severity, msg);
+        }
     }
 
     @Override
     public boolean allowNextIteration() {
-        return m1.allowNextIteration() && m2.allowNextIteration();
+        for (IAnalysisMonitoring m : monitors) {
+            if (!m.allowNextIteration()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public void visitPhasePre(AnalysisPhase phase) {
-        m1.visitPhasePre(phase);
-        m2.visitPhasePre(phase);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPhasePre(phase);
+        }
     }
 
     @Override
     public void visitPhasePost(AnalysisPhase phase) {
-        m1.visitPhasePost(phase);
-        m2.visitPhasePost(phase);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPhasePost(phase);
+        }
     }
 
     @Override
     public Set<Message> getMessages() {
         Set<Message> messages = newSet();
-        if (m1.getMessages() != null) {
-            messages.addAll(m1.getMessages());
-        }
-        if (m2.getMessages() != null) {
-            messages.addAll(m2.getMessages());
+        for (IAnalysisMonitoring m : monitors) {
+            Set<Message> ms = m.getMessages();
+            if (ms != null) {
+                messages.addAll(ms);
+            }
         }
         return messages;
     }
@@ -139,245 +217,278 @@ public class CompositeMonitoring implements IAnalysisMonitoring {
     @Override
     public Map<TypeCollector.VariableSummary, Value> getTypeInformation() {
         Map<TypeCollector.VariableSummary, Value> map = newMap();
-        if (m1.getTypeInformation() != null) {
-            map.putAll(m1.getTypeInformation());
-        }
-        if (m2.getTypeInformation() != null) {
-            map.putAll(m2.getTypeInformation());
+        for (IAnalysisMonitoring m : monitors) {
+            Map<TypeCollector.VariableSummary, Value> ti = m.getTypeInformation();
+            if (ti != null) {
+                map.putAll(ti);
+            }
         }
         return map;
     }
 
     @Override
     public void setSolverInterface(Solver.SolverInterface c) {
-        m1.setSolverInterface(c);
-        m2.setSolverInterface(c);
+        for (IAnalysisMonitoring m : monitors) {
+            m.setSolverInterface(c);
+        }
     }
 
     @Override
     public void visitBlockTransferPre(BasicBlock b, State s) {
-        m1.visitBlockTransferPre(b, s);
-        m2.visitBlockTransferPre(b, s);
+        for (IAnalysisMonitoring m : blockTransferPreMonitors) {
+            m.visitBlockTransferPre(b, s);
+        }
     }
 
     @Override
     public void visitCall(AbstractNode n, Value funval) {
-        m1.visitCall(n, funval);
-        m2.visitCall(n, funval);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitCall(n, funval);
+        }
     }
 
     @Override
     public void visitEvalCall(AbstractNode n, Value v) {
-        m1.visitEvalCall(n, v);
-        m2.visitEvalCall(n, v);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitEvalCall(n, v);
+        }
     }
 
     @Override
     public void visitFunction(Function f, Collection<State> entry_states) {
-        m1.visitFunction(f, entry_states);
-        m2.visitFunction(f, entry_states);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitFunction(f, entry_states);
+        }
     }
 
     @Override
     public void visitIf(IfNode n, Value v) {
-        m1.visitIf(n, v);
-        m2.visitIf(n, v);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitIf(n, v);
+        }
     }
 
     @Override
     public void visitIn(AbstractNode n, boolean maybe_v2_object, boolean maybe_v2_nonobject) {
-        m1.visitIn(n, maybe_v2_object, maybe_v2_nonobject);
-        m2.visitIn(n, maybe_v2_object, maybe_v2_nonobject);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitIn(n, maybe_v2_object, maybe_v2_nonobject);
+        }
     }
 
     @Override
     public void visitInnerHTMLWrite(Node n, Value v) {
-        m1.visitInnerHTMLWrite(n, v);
-        m2.visitInnerHTMLWrite(n, v);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitInnerHTMLWrite(n, v);
+        }
     }
 
     @Override
     public void visitInstanceof(AbstractNode n, boolean maybe_v2_non_function, boolean maybe_v2_function, boolean maybe_v2_prototype_primitive, boolean maybe_v2_prototype_nonprimitive) {
-        m1.visitInstanceof(n, maybe_v2_non_function, maybe_v2_function, maybe_v2_prototype_primitive, maybe_v2_prototype_nonprimitive);
-        m2.visitInstanceof(n, maybe_v2_non_function, maybe_v2_function, maybe_v2_prototype_primitive, maybe_v2_prototype_nonprimitive);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitInstanceof(n, maybe_v2_non_function, maybe_v2_function, maybe_v2_prototype_primitive, maybe_v2_prototype_nonprimitive);
+        }
     }
 
     @Override
     public void visitJoin() {
-        m1.visitJoin();
-        m2.visitJoin();
+        for (IAnalysisMonitoring m : joinMonitors) {
+            m.visitJoin();
+        }
     }
 
     @Override
     public void visitBlockTransferPost(BasicBlock b, State state) {
-        m1.visitBlockTransferPost(b, state);
-        m2.visitBlockTransferPost(b, state);
+        for (IAnalysisMonitoring m : blockTransferPostMonitors) {
+            m.visitBlockTransferPost(b, state);
+        }
     }
 
     @Override
     public void visitNativeFunctionCall(AbstractNode n, HostObject hostobject, boolean num_actuals_unknown, int num_actuals, int min, int max) {
-        m1.visitNativeFunctionCall(n, hostobject, num_actuals_unknown, num_actuals, min, max);
-        m2.visitNativeFunctionCall(n, hostobject, num_actuals_unknown, num_actuals, min, max);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitNativeFunctionCall(n, hostobject, num_actuals_unknown, num_actuals, min, max);
+        }
     }
 
     @Override
     public void visitNewFlow(BasicBlock b, Context c, State s, String diff, String info) {
-        m1.visitNewFlow(b, c, s, diff, info);
-        m2.visitNewFlow(b, c, s, diff, info);
+        for (IAnalysisMonitoring m : newFlowMonitors) {
+            m.visitNewFlow(b, c, s, diff, info);
+        }
     }
 
     @Override
     public void visitNodeTransferPre(AbstractNode n, State s) {
-        m1.visitNodeTransferPre(n, s);
-        m2.visitNodeTransferPre(n, s);
+        for (IAnalysisMonitoring m : nodeTransferPreMonitors) {
+            m.visitNodeTransferPre(n, s);
+        }
     }
 
     @Override
     public void visitNodeTransferPost(AbstractNode n, State s) {
-        m1.visitNodeTransferPost(n, s);
-        m2.visitNodeTransferPost(n, s);
+        for (IAnalysisMonitoring m : nodeTransferPostMonitors) {
+            m.visitNodeTransferPost(n, s);
+        }
     }
 
     @Override
     public void visitPropertyAccess(Node n, Value baseval) {
-        m1.visitPropertyAccess(n, baseval);
-        m2.visitPropertyAccess(n, baseval);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPropertyAccess(n, baseval);
+        }
     }
 
     @Override
     public void visitPropertyRead(AbstractNode n, Set<ObjectLabel> objs, PKeys propertyname, State state, boolean check_unknown) {
-        m1.visitPropertyRead(n, objs, propertyname, state, check_unknown);
-        m2.visitPropertyRead(n, objs, propertyname, state, check_unknown);
+        for (IAnalysisMonitoring m : propertyReadMonitors) {
+            m.visitPropertyRead(n, objs, propertyname, state, check_unknown);
+        }
     }
 
     @Override
     public void visitPropertyWrite(Node n, Set<ObjectLabel> objs, PKeys propertyname) {
-        m1.visitPropertyWrite(n, objs, propertyname);
-        m2.visitPropertyWrite(n, objs, propertyname);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPropertyWrite(n, objs, propertyname);
+        }
     }
 
     @Override
     public void visitRead(Node n, Value v, State state) {
-        m1.visitRead(n, v, state);
-        m2.visitRead(n, v, state);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitRead(n, v, state);
+        }
     }
 
     @Override
     public void visitReadNonThisVariable(ReadVariableNode n, Value v) {
-        m1.visitReadNonThisVariable(n, v);
-        m2.visitReadNonThisVariable(n, v);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitReadNonThisVariable(n, v);
+        }
     }
 
     @Override
     public void visitReadProperty(ReadPropertyNode n, Set<ObjectLabel> objlabels, PKeys propertyname, boolean maybe, State state, Value v, ObjectLabel global_obj) {
-        m1.visitReadProperty(n, objlabels, propertyname, maybe, state, v, global_obj);
-        m2.visitReadProperty(n, objlabels, propertyname, maybe, state, v, global_obj);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitReadProperty(n, objlabels, propertyname, maybe, state, v, global_obj);
+        }
     }
 
     @Override
     public void visitReadThis(ReadVariableNode n, Value v, State state, ObjectLabel global_obj) {
-        m1.visitReadThis(n, v, state, global_obj);
-        m2.visitReadThis(n, v, state, global_obj);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitReadThis(n, v, state, global_obj);
+        }
     }
 
     @Override
     public void visitReadVariable(ReadVariableNode n, Value v, State state) {
-        m1.visitReadVariable(n, v, state);
-        m2.visitReadVariable(n, v, state);
+        for (IAnalysisMonitoring m : readVariableMonitors) {
+            m.visitReadVariable(n, v, state);
+        }
     }
 
     @Override
     public void visitRecoveryGraph(AbstractNode node, int size) {
-        m1.visitRecoveryGraph(node, size);
-        m2.visitRecoveryGraph(node, size);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitRecoveryGraph(node, size);
+        }
     }
 
     @Override
     public void visitUnknownValueResolve(AbstractNode node, boolean partial, boolean scanning) {
-        m1.visitUnknownValueResolve(node, partial, scanning);
-        m2.visitUnknownValueResolve(node, partial, scanning);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitUnknownValueResolve(node, partial, scanning);
+        }
     }
 
     @Override
     public void visitUserFunctionCall(Function f, AbstractNode call, boolean constructor) {
-        m1.visitUserFunctionCall(f, call, constructor);
-        m2.visitUserFunctionCall(f, call, constructor);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitUserFunctionCall(f, call, constructor);
+        }
     }
 
     @Override
     public void visitVariableAsRead(AbstractNode n, String varname, Value v, State state) {
-        m1.visitVariableAsRead(n, varname, v, state);
-        m2.visitVariableAsRead(n, varname, v, state);
+        for (IAnalysisMonitoring m : variableAsReadMonitors) {
+            m.visitVariableAsRead(n, varname, v, state);
+        }
     }
 
     @Override
     public void visitVariableOrProperty(String var, SourceLocation loc, Value value, Context context, State state) {
-        m1.visitVariableOrProperty(var, loc, value, context, state);
-        m2.visitVariableOrProperty(var, loc, value, context, state);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitVariableOrProperty(var, loc, value, context, state);
+        }
     }
 
     @Override
     public void visitNativeFunctionReturn(AbstractNode node, HostObject hostObject, Value result) {
-        m1.visitNativeFunctionReturn(node, hostObject, result);
-        m2.visitNativeFunctionReturn(node, hostObject, result);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitNativeFunctionReturn(node, hostObject, result);
+        }
     }
 
     @Override
     public void visitEventHandlerRegistration(AbstractNode node, Context context, Value handler) {
-        m1.visitEventHandlerRegistration(node, context, handler);
-        m2.visitEventHandlerRegistration(node, context, handler);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitEventHandlerRegistration(node, context, handler);
+        }
     }
 
     @Override
     public void visitPromiseCall(AbstractNode node, FunctionCalls.CallInfo call) {
-        m1.visitPromiseCall(node, call);
-        m2.visitPromiseCall(node, call);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPromiseCall(node, call);
+        }
     }
 
     @Override
     public void visitPromiseExecutor(AbstractNode node, Value executor) {
-        m1.visitPromiseExecutor(node, executor);
-        m2.visitPromiseExecutor(node, executor);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPromiseExecutor(node, executor);
+        }
     }
 
     @Override
     public void visitPromiseResolve(AbstractNode node, ObjectLabel promise, Value resolvedValue) {
-        m1.visitPromiseResolve(node, promise, resolvedValue);
-        m2.visitPromiseResolve(node, promise, resolvedValue);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitPromiseResolve(node, promise, resolvedValue);
+        }
     }
 
     @Override
     public void visitPropagationPre(BlockAndContext<Context> from, BlockAndContext<Context> to) {
-        m1.visitPropagationPre(from, to);
-        m2.visitPropagationPre(from, to);
+        for (IAnalysisMonitoring m : propagationPreMonitors) {
+            m.visitPropagationPre(from, to);
+        }
     }
 
     @Override
     public void visitPropagationPost(BlockAndContext<Context> from, BlockAndContext<Context> to, boolean changed) {
-        m1.visitPropagationPost(from, to, changed);
-        m2.visitPropagationPost(from, to, changed);
+        for (IAnalysisMonitoring m : propagationPostMonitors) {
+            m.visitPropagationPost(from, to, changed);
+        }
     }
 
     @Override
     public void visitNewObject(AbstractNode node, ObjectLabel label, State s) {
-        m1.visitNewObject(node, label, s);
-        m2.visitNewObject(node, label, s);
+        for (IAnalysisMonitoring m : newObjectMonitors) {
+            m.visitNewObject(node, label, s);
+        }
     }
 
     @Override
     public void visitRenameObject(AbstractNode node, ObjectLabel from, ObjectLabel to, State s) {
-        m1.visitRenameObject(node, from, to, s);
-        m2.visitRenameObject(node, from, to, s);
+        for (IAnalysisMonitoring m : renameObjectMonitors) {
+            m.visitRenameObject(node, from, to, s);
+        }
     }
 
     @Override
     public void visitIterationDone() {
-        m1.visitIterationDone();
-        m2.visitIterationDone();
-    }
-
-    protected interface Factory<T> {
-
-        T build(T e1, T e2);
+        for (IAnalysisMonitoring m : monitors) {
+            m.visitIterationDone();
+        }
     }
 }
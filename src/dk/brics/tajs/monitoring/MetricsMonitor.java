@@ -0,0 +1,435 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.solver.BlockAndContext;
+import dk.brics.tajs.util.Canonicalizer;
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Monitor that collects metrics of a running analysis.
+ * <p>
+ * The solver thread only updates plain counters. About once per second (and at the end of each phase)
+ * it publishes an immutable snapshot that also contains the work list size, the number of abstract states
+ * per block, the canonicalizer size and the heap use. The latest snapshot is served in the Prometheus text format
+ * at <code>http://127.0.0.1:PORT/metrics</code> by an embedded Jetty server and/or written as JSON to a file.
+ * The server is started once per JVM and serves the snapshots of the most recent analysis.
+ */
+public class MetricsMonitor extends DefaultAnalysisMonitoring {
+
+    private static final Logger log = Logger.getLogger(MetricsMonitor.class);
+
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 1000;
+
+    private static Server server;
+
+    private static volatile Snapshot latest;
+
+    private final Path snapshotFile;
+
+    /**
+     * Set if writing the snapshot file has failed, in which case no more snapshots are written to the file.
+     */
+    private boolean snapshotFileFailed;
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private Solver.SolverInterface c;
+
+    private AnalysisPhase phase;
+
+    private long startTime;
+
+    private long lastSnapshotTime;
+
+    private long lastSnapshotNodeTransfers;
+
+    private long lastSnapshotBlockTransfers;
+
+    private long nodeTransfers;
+
+    private long blockTransfers;
+
+    private long propagations;
+
+    private long changedPropagations;
+
+    private long joins;
+
+    private long partialRecoveries;
+
+    private long fullRecoveries;
+
+    private final Histogram recoveryGraphSizes = new Histogram();
+
+    /**
+     * Constructs a new metrics monitor.
+     *
+     * @param port         port of the local HTTP endpoint, 0 for any free port, or -1 for no endpoint
+     * @param snapshotFile file for the JSON snapshots, or null for no file
+     */
+    public MetricsMonitor(int port, Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        if (port >= 0)
+            startServer(port);
+    }
+
+    /**
+     * Starts the HTTP endpoint, unless already started.
+     * Failing to start the endpoint is reported but does not stop the analysis.
+     */
+    private static synchronized void startServer(int port) {
+        if (server != null)
+            return;
+        QueuedThreadPool threads = new QueuedThreadPool(8, 1);
+        threads.setName("tajs-metrics");
+        threads.setDaemon(true); // must not keep the JVM alive after the analysis
+        Server s = new Server(threads);
+        ServerConnector connector = new ServerConnector(s, 1, 1);
+        connector.setHost("127.0.0.1");
+        connector.setPort(port);
+        s.addConnector(connector);
+        s.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                if (!"/metrics".equals(target)) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                } else {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+                    Snapshot snapshot = latest;
+                    response.getWriter().write(snapshot != null ? snapshot.toPrometheus() : "");
+                }
+                baseRequest.setHandled(true);
+            }
+        });
+        try {
+            s.start();
+            server = s;
+            log.info("Metrics available at http://127.0.0.1:" + connector.getLocalPort() + "/metrics");
+        } catch (Exception e) {
+            log.error("Unable to start metrics endpoint on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the port of the HTTP endpoint, or -1 if it has not been started.
+     */
+    public static synchronized int getPort() {
+        return server != null ? ((ServerConnector) server.getConnectors()[0]).getLocalPort() : -1;
+    }
+
+    @Override
+    public void setSolverInterface(Solver.SolverInterface c) {
+        this.c = c;
+    }
+
+    @Override
+    public void visitPhasePre(AnalysisPhase phase) {
+        this.phase = phase;
+        if (startTime == 0)
+            startTime = lastSnapshotTime = System.currentTimeMillis();
+        publish(System.currentTimeMillis());
+    }
+
+    @Override
+    public void visitPhasePost(AnalysisPhase phase) {
+        publish(System.currentTimeMillis());
+    }
+
+    @Override
+    public void visitNodeTransferPre(AbstractNode n, State s) {
+        nodeTransfers++;
+    }
+
+    @Override
+    public void visitBlockTransferPre(BasicBlock b, State s) {
+        blockTransfers++;
+    }
+
+    @Override
+    public void visitBlockTransferPost(BasicBlock b, State s) {
+        long t = System.currentTimeMillis();
+        if (t - lastSnapshotTime >= SNAPSHOT_INTERVAL_MILLIS)
+            publish(t);
+    }
+
+    @Override
+    public void visitPropagationPost(BlockAndContext<Context> from, BlockAndContext<Context> to, boolean changed) {
+        propagations++;
+        if (changed)
+            changedPropagations++;
+    }
+
+    @Override
+    public void visitJoin() {
+        joins++;
+    }
+
+    @Override
+    public void visitUnknownValueResolve(AbstractNode node, boolean partial, boolean scanning) {
+        if (partial)
+            partialRecoveries++;
+        else
+            fullRecoveries++;
+    }
+
+    @Override
+    public void visitRecoveryGraph(AbstractNode node, int size) {
+        recoveryGraphSizes.observe(size);
+    }
+
+    /**
+     * Takes a snapshot of the metrics, makes it available to the endpoint, and writes it to the snapshot file.
+     */
+    private void publish(long time) {
+        Snapshot snapshot = new Snapshot(this, time);
+        lastSnapshotTime = time;
+        lastSnapshotNodeTransfers = nodeTransfers;
+        lastSnapshotBlockTransfers = blockTransfers;
+        latest = snapshot;
+        if (snapshotFile != null && !snapshotFileFailed) {
+            try {
+                Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+                try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    gson.toJson(snapshot.toJson(), out);
+                }
+                Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING); // readers never see a partial snapshot
+            } catch (IOException e) { // the metrics must not stop the analysis
+                snapshotFileFailed = true;
+                log.error("Unable to write metrics snapshot to " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Histogram with power-of-two buckets.
+     */
+    private static class Histogram {
+
+        private static final int BUCKETS = 21;
+
+        private final long[] counts = new long[BUCKETS + 1];
+
+        private long sum;
+
+        private long count;
+
+        void observe(long value) {
+            int i = 0;
+            while (i < BUCKETS && value > (1L << i))
+                i++;
+            counts[i]++;
+            sum += value;
+            count++;
+        }
+
+        Histogram copy() {
+            Histogram h = new Histogram();
+            System.arraycopy(counts, 0, h.counts, 0, counts.length);
+            h.sum = sum;
+            h.count = count;
+            return h;
+        }
+
+        void toPrometheus(StringBuilder b, String name, String help) {
+            header(b, name, help, "histogram");
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i];
+                b.append(name).append("_bucket{le=\"").append(1L << i).append("\"} ").append(cumulative).append('\n');
+            }
+            b.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            b.append(name).append("_sum ").append(sum).append('\n');
+            b.append(name).append("_count ").append(count).append('\n');
+        }
+
+        JsonObject toJson() {
+            JsonObject o = new JsonObject();
+            JsonArray buckets = new JsonArray();
+            for (int i = 0; i <= BUCKETS; i++) {
+                JsonObject bucket = new JsonObject();
+                bucket.addProperty("le", i < BUCKETS ? Long.toString(1L << i) : "+Inf");
+                bucket.addProperty("count", counts[i]);
+                buckets.add(bucket);
+            }
+            o.add("buckets", buckets);
+            o.addProperty("sum", sum);
+            o.addProperty("count", count);
+            return o;
+        }
+    }
+
+    private static void header(StringBuilder b, String name, String help, String type) {
+        b.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        b.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void metric(StringBuilder b, String name, String help, String type, Number value) {
+        header(b, name, help, type);
+        b.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Immutable snapshot of the metrics, safe to read from other threads.
+     * Only contains copies of the numbers, not references to the analysis.
+     */
+    private static class Snapshot {
+
+        private final String phaseName;
+
+        private final long elapsedMillis;
+
+        private final long nodeTransfers;
+
+        private final long blockTransfers;
+
+        private final double nodeTransferRate;
+
+        private final double blockTransferRate;
+
+        private final long propagations;
+
+        private final long changedPropagations;
+
+        private final long joins;
+
+        private final long partialRecoveries;
+
+        private final long fullRecoveries;
+
+        private final int worklistSize;
+
+        private final int abstractStates;
+
+        private final int canonicalizerSize;
+
+        private final long heapUsed;
+
+        private final long heapMax;
+
+        private final Histogram recoveryGraphSizes;
+
+        private final Histogram statesPerBlock;
+
+        Snapshot(MetricsMonitor m, long time) {
+            phaseName = m.phase != null ? m.phase.name().toLowerCase(Locale.ROOT) : "none";
+            elapsedMillis = time - m.startTime;
+            double seconds = (time - m.lastSnapshotTime) / 1000.0;
+            nodeTransfers = m.nodeTransfers;
+            blockTransfers = m.blockTransfers;
+            nodeTransferRate = seconds > 0 ? (nodeTransfers - m.lastSnapshotNodeTransfers) / seconds : 0;
+            blockTransferRate = seconds > 0 ? (blockTransfers - m.lastSnapshotBlockTransfers) / seconds : 0;
+            propagations = m.propagations;
+            changedPropagations = m.changedPropagations;
+            joins = m.joins;
+            partialRecoveries = m.partialRecoveries;
+            fullRecoveries = m.fullRecoveries;
+            Solver.SolverInterface c = m.c;
+            worklistSize = c != null && c.getWorklist() != null ? c.getWorklist().size() : 0;
+            abstractStates = c != null && c.getAnalysisLatticeElement() != null ? c.getAnalysisLatticeElement().getNumberOfStates() : 0;
+            canonicalizerSize = Canonicalizer.get().size();
+            Runtime rt = Runtime.getRuntime();
+            heapUsed = rt.totalMemory() - rt.freeMemory();
+            heapMax = rt.maxMemory();
+            recoveryGraphSizes = m.recoveryGraphSizes.copy();
+            statesPerBlock = new Histogram();
+            if (c != null && c.getAnalysisLatticeElement() != null) {
+                // counted from the block entry states, as the propagations also include the call edges
+                for (Function f : c.getFlowGraph().getFunctions())
+                    for (BasicBlock b : f.getBlocks()) {
+                        int n = c.getAnalysisLatticeElement().getStates(b).size();
+                        if (n > 0)
+                            statesPerBlock.observe(n);
+                    }
+            }
+        }
+
+        String toPrometheus() {
+            StringBuilder b = new StringBuilder();
+            header(b, "tajs_phase", "Current analysis phase.", "gauge");
+            b.append("tajs_phase{phase=\"").append(phaseName).append("\"} 1\n");
+            metric(b, "tajs_elapsed_seconds", "Time since the analysis started.", "gauge", elapsedMillis / 1000.0);
+            metric(b, "tajs_node_transfers_total", "Number of node transfers.", "counter", nodeTransfers);
+            metric(b, "tajs_block_transfers_total", "Number of block transfers.", "counter", blockTransfers);
+            metric(b, "tajs_node_transfer_rate", "Node transfers per second since the previous snapshot.", "gauge", nodeTransferRate);
+            metric(b, "tajs_block_transfer_rate", "Block transfers per second since the previous snapshot.", "gauge", blockTransferRate);
+            metric(b, "tajs_propagations_total", "Number of dataflow propagations.", "counter", propagations);
+            metric(b, "tajs_changed_propagations_total", "Number of dataflow propagations that changed the destination state.", "counter", changedPropagations);
+            metric(b, "tajs_joins_total", "Number of state joins.", "counter", joins);
+            header(b, "tajs_recoveries_total", "Number of unknown value recoveries.", "counter");
+            b.append("tajs_recoveries_total{kind=\"partial\"} ").append(partialRecoveries).append('\n');
+            b.append("tajs_recoveries_total{kind=\"full\"} ").append(fullRecoveries).append('\n');
+            recoveryGraphSizes.toPrometheus(b, "tajs_recovery_graph_size", "Sizes of unknown value recovery graphs.");
+            metric(b, "tajs_worklist_size", "Number of entries in the work list.", "gauge", worklistSize);
+            metric(b, "tajs_abstract_states", "Number of abstract states.", "gauge", abstractStates);
+            statesPerBlock.toPrometheus(b, "tajs_states_per_block", "Number of abstract states (contexts) per reached block.");
+            metric(b, "tajs_canonicalizer_size", "Number of canonical instances.", "gauge", canonicalizerSize);
+            metric(b, "tajs_heap_used_bytes", "Used heap memory.", "gauge", heapUsed);
+            metric(b, "tajs_heap_max_bytes", "Maximum heap memory.", "gauge", heapMax);
+            return b.toString();
+        }
+
+        JsonObject toJson() {
+            JsonObject o = new JsonObject();
+            o.addProperty("phase", phaseName);
+            o.addProperty("elapsedMillis", elapsedMillis);
+            o.addProperty("nodeTransfers", nodeTransfers);
+            o.addProperty("blockTransfers", blockTransfers);
+            o.addProperty("nodeTransferRate", nodeTransferRate);
+            o.addProperty("blockTransferRate", blockTransferRate);
+            o.addProperty("propagations", propagations);
+            o.addProperty("changedPropagations", changedPropagations);
+            o.addProperty("joins", joins);
+            o.addProperty("partialRecoveries", partialRecoveries);
+            o.addProperty("fullRecoveries", fullRecoveries);
+            o.add("recoveryGraphSizes", recoveryGraphSizes.toJson());
+            o.addProperty("worklistSize", worklistSize);
+            o.addProperty("abstractStates", abstractStates);
+            o.add("statesPerBlock", statesPerBlock.toJson());
+            o.addProperty("canonicalizerSize", canonicalizerSize);
+            o.addProperty("heapUsedBytes", heapUsed);
+            o.addProperty("heapMaxBytes", heapMax);
+            return o;
+        }
+    }
+}
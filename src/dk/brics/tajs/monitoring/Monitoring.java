@@ -64,7 +64,6 @@ import dk.brics.tajs.lattice.ObjectLabel.Kind;
 import dk.brics.tajs.lattice.PKey;
 import dk.brics.tajs.lattice.PKey.StringPKey;
 import dk.brics.tajs.lattice.PKeys;
-import dk.brics.tajs.lattice.ScopeChain;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.UnknownValueResolver;
 import dk.brics.tajs.lattice.Value;
@@ -79,6 +78,7 @@ import dk.brics.tajs.solver.Message;
 import dk.brics.tajs.solver.Message.Severity;
 import dk.brics.tajs.solver.Message.Status;
 import dk.brics.tajs.solver.NodeAndContext;
+import dk.brics.tajs.util.Canonicalizer;
 import dk.brics.tajs.util.Pair;
 import dk.brics.tajs.util.Strings;
 import org.apache.log4j.Logger;
@@ -645,14 +645,17 @@ public class Monitoring implements IAnalysisMonitoring {
             b.append("\n\nNode transfers:                                                               ").append(node_transfers);
             b.append("\nBlock transfers:                                                              ").append(block_transfers);
             b.append("\nUnknown-value recoveries: \n" + " analysis: partial=").append(unknown_value_resolve_analyzing_partial).append(", full=").append(unknown_value_resolve_analyzing_full).append("\n").append(" scanning: partial=").append(unknown_value_resolve_scanning_partial).append(", full=").append(unknown_value_resolve_scanning_full);
+            b.append("\n incoming call edges cache: hits=").append(callgraph.getIncomingCallEdgesCacheHits()).append(", misses=").append(callgraph.getIncomingCallEdgesCacheMisses());
 
             b.append("\n\nState joins:                                                                  ").append(joins).append("\n\n");
 
             b.append(callgraph.getCallGraphStatistics());
 
-            b.append("\nBlockState: created=").append(State.getNumberOfStatesCreated()).append(", makeWritableStore=").append(State.getNumberOfMakeWritableStoreCalls());
+            b.append("\nBlockState: created=").append(State.getNumberOfStatesCreated()).append(", makeWritableStore=").append(State.getNumberOfMakeWritableStoreCalls())
+                    .append(", joins=").append(State.getNumberOfPropagateCalls()).append(", joinsWithFork=").append(State.getNumberOfPropagateCallsWithFork()).append(", joinVisitedLabels=").append(State.getNumberOfPropagateVisitedObjectLabels());
             b.append("\nObj: created=").append(Obj.getNumberOfObjsCreated()).append(", makeWritableProperties=").append(Obj.getNumberOfMakeWritablePropertiesCalls());
-            b.append("\nScopeChain cache: hits=").append(ScopeChain.getNumberOfCacheHits()).append(", misses=").append(ScopeChain.getNumberOfCacheMisses()).append(", finalSize=").append(ScopeChain.getCacheSize());
+            Canonicalizer canonicalizer = Canonicalizer.get();
+            b.append("\nCanonicalizer cache: hits=").append(canonicalizer.getCacheHits()).append(", misses=").append(canonicalizer.getCacheMisses()).append(", evictions=").append(canonicalizer.getEvictions()).append(", finalSize=").append(canonicalizer.size());
             b.append("\nBasic blocks: ").append(flowgraph.getNumberOfBlocks());
             b.append("\nRecovery graph sizes: ").append(recovery_graph_sizes);
 
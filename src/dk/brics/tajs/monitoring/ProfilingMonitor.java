@@ -0,0 +1,244 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.solver.BlockAndContext;
+import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.Pair;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.addToMapSet;
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Monitor that attributes the time of the fixpoint solver to functions, blocks and contexts.
+ * <p>
+ * For each block transfer in the analysis phase, the elapsed time, the number of node transfers, and the number of
+ * joins into the entry states of the block are accumulated per function, per (function, context) pair, and per block.
+ * After the analysis phase, the top contributors are logged, and the profile is optionally written as collapsed stacks
+ * (one "function;context;block time-in-microseconds" line per block and context), which can be rendered with flame graph tools.
+ */
+public class ProfilingMonitor extends DefaultAnalysisMonitoring {
+
+    private static final Logger log = Logger.getLogger(ProfilingMonitor.class);
+
+    private final int top;
+
+    private final Path stacksFile;
+
+    private boolean active;
+
+    private long blockStart;
+
+    private Profile currentBlock, currentBlockContext, currentFunctionContext, currentFunction;
+
+    private BlockAndContext<Context> propagationTarget;
+
+    private final Map<Function, Profile> functions = newMap();
+
+    private final Map<Pair<Function, Context>, Profile> functionContexts = newMap();
+
+    private final Map<BasicBlock, Profile> blocks = newMap();
+
+    private final Map<BlockAndContext<Context>, Profile> blockContexts = newMap();
+
+    private final Map<Function, Set<Context>> contexts = newMap();
+
+    /**
+     * Accumulated measurements.
+     */
+    private static class Profile {
+
+        private long nanos;
+
+        private int visits;
+
+        private int nodeTransfers;
+
+        private int joins;
+    }
+
+    /**
+     * Constructs a new profiling monitor.
+     *
+     * @param top        number of top contributors to report in each category
+     * @param stacksFile file for the collapsed stacks, or null for none
+     */
+    public ProfilingMonitor(int top, Path stacksFile) {
+        this.top = top;
+        this.stacksFile = stacksFile;
+    }
+
+    @Override
+    public void visitPhasePre(AnalysisPhase phase) {
+        active = phase == AnalysisPhase.ANALYSIS;
+    }
+
+    @Override
+    public void visitPhasePost(AnalysisPhase phase) {
+        if (phase == AnalysisPhase.ANALYSIS) {
+            active = false;
+            report();
+            if (stacksFile != null)
+                writeStacks();
+        }
+    }
+
+    @Override
+    public void visitBlockTransferPre(BasicBlock b, State s) {
+        if (!active)
+            return;
+        Function f = b.getFunction();
+        Context c = s.getContext();
+        currentFunction = functions.computeIfAbsent(f, k -> new Profile());
+        currentFunctionContext = functionContexts.computeIfAbsent(Pair.make(f, c), k -> new Profile());
+        currentBlock = blocks.computeIfAbsent(b, k -> new Profile());
+        currentBlockContext = blockContexts.computeIfAbsent(new BlockAndContext<>(b, c), k -> new Profile());
+        addToMapSet(contexts, f, c);
+        currentFunction.visits++;
+        currentFunctionContext.visits++;
+        currentBlock.visits++;
+        currentBlockContext.visits++;
+        blockStart = System.nanoTime();
+    }
+
+    @Override
+    public void visitBlockTransferPost(BasicBlock b, State s) {
+        if (currentBlock == null)
+            return;
+        long elapsed = System.nanoTime() - blockStart;
+        currentFunction.nanos += elapsed;
+        currentFunctionContext.nanos += elapsed;
+        currentBlock.nanos += elapsed;
+        currentBlockContext.nanos += elapsed;
+        currentBlock = currentBlockContext = currentFunctionContext = currentFunction = null;
+    }
+
+    @Override
+    public void visitNodeTransferPre(AbstractNode n, State s) {
+        if (currentBlock == null)
+            return;
+        currentFunction.nodeTransfers++;
+        currentFunctionContext.nodeTransfers++;
+        currentBlock.nodeTransfers++;
+    }
+
+    @Override
+    public void visitPropagationPre(BlockAndContext<Context> from, BlockAndContext<Context> to) {
+        propagationTarget = to;
+    }
+
+    @Override
+    public void visitPropagationPost(BlockAndContext<Context> from, BlockAndContext<Context> to, boolean changed) {
+        propagationTarget = null;
+    }
+
+    /**
+     * Attributes the join to the block and context whose entry state grows.
+     */
+    @Override
+    public void visitJoin() {
+        if (!active || propagationTarget == null)
+            return;
+        BasicBlock b = propagationTarget.getBlock();
+        Function f = b.getFunction();
+        functions.computeIfAbsent(f, k -> new Profile()).joins++;
+        functionContexts.computeIfAbsent(Pair.make(f, propagationTarget.getContext()), k -> new Profile()).joins++;
+        blocks.computeIfAbsent(b, k -> new Profile()).joins++;
+    }
+
+    private void report() {
+        StringBuilder b = new StringBuilder("\nProfile of the data flow analysis (top " + top + "):");
+        b.append("\n Functions (time, block transfers, node transfers, joins, contexts):");
+        for (Map.Entry<Function, Profile> e : getTop(functions)) {
+            Profile p = e.getValue();
+            b.append(String.format("%n  %8.1fms %7d %8d %7d %5d  %s", p.nanos / 1e6, p.visits, p.nodeTransfers, p.joins,
+                    contexts.getOrDefault(e.getKey(), Collections.emptySet()).size(), describe(e.getKey())));
+        }
+        b.append("\n Function contexts (time, block transfers, node transfers, joins):");
+        for (Map.Entry<Pair<Function, Context>, Profile> e : getTop(functionContexts)) {
+            Profile p = e.getValue();
+            b.append(String.format("%n  %8.1fms %7d %8d %7d  %s %s", p.nanos / 1e6, p.visits, p.nodeTransfers, p.joins,
+                    describe(e.getKey().getFirst()), e.getKey().getSecond()));
+        }
+        b.append("\n Blocks (time, block transfers, node transfers, joins):");
+        for (Map.Entry<BasicBlock, Profile> e : getTop(blocks)) {
+            Profile p = e.getValue();
+            b.append(String.format("%n  %8.1fms %7d %8d %7d  %s", p.nanos / 1e6, p.visits, p.nodeTransfers, p.joins, describe(e.getKey())));
+        }
+        log.info(b);
+    }
+
+    private <K> List<Map.Entry<K, Profile>> getTop(Map<K, Profile> profiles) {
+        List<Map.Entry<K, Profile>> entries = newList(profiles.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<K, Profile> e) -> e.getValue().nanos).reversed());
+        return entries.subList(0, Math.min(top, entries.size()));
+    }
+
+    private void writeStacks() {
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(stacksFile, StandardCharsets.UTF_8))) {
+            for (Map.Entry<BlockAndContext<Context>, Profile> e : blockContexts.entrySet()) {
+                long micros = e.getValue().nanos / 1000;
+                if (micros == 0)
+                    continue;
+                BasicBlock b = e.getKey().getBlock();
+                pw.println(frame(describe(b.getFunction())) + ";" + frame(String.valueOf(e.getKey().getContext())) + ";" + frame(describe(b)) + " " + micros);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException(e);
+        }
+        log.info("Collapsed stacks written to " + stacksFile);
+    }
+
+    /**
+     * Makes the given string usable as a frame of a collapsed stack.
+     */
+    private static String frame(String s) {
+        return s.replace(';', ',').replaceAll("\\s+", " ");
+    }
+
+    private static String describe(Function f) {
+        String name = f.isMain() ? "<main>" : f.getName() == null ? "<anonymous>" : f.getName();
+        return name + " (" + describe(f.getSourceLocation()) + ")";
+    }
+
+    private static String describe(BasicBlock b) {
+        return "block " + b.getIndex() + " (" + describe(b.getSourceLocation()) + ")";
+    }
+
+    private static String describe(SourceLocation loc) {
+        return loc == null ? "?" : loc.toString();
+    }
+}
@@ -281,6 +281,39 @@ public class OptionValues {
     @Option(name = "-no-heap-sensitivity", usage = "Disable heap sensitivity")
     private boolean noHeapSensitivity;
 
+    @Option(name = "-parallel-parsing", usage = "Number of threads for parsing the JavaScript source files")
+    private int parallelParsingThreads = -1;
+
+    @Option(name = "-bucket-worklist", usage = "Use a bucket queue with precomputed priorities for the work list (may change the analysis result when local contexts are used, e.g. with -loop-unrolling)")
+    private boolean bucketWorkList;
+
+    @Option(name = "-wto-worklist", usage = "Order the blocks of each function in the work list by weak topological order, such that inner loops stabilize first")
+    private boolean weakTopologicalWorkList;
+
+    @Option(name = "-persistent-store", usage = "Use a persistent hash trie for the abstract store (ignored with -no-copy-on-write)")
+    private boolean persistentStore;
+
+    @Option(name = "-result-cache", usage = "Directory for caching the output of the analysis, reused when the TAJS build, the options and the source code are unchanged")
+    private Path resultCacheDir;
+
+    @Option(name = "-reuse-initial-state", usage = "Reuse the ECMAScript part of the initial state from the previous analysis in the same JVM, if the options are unchanged")
+    private boolean reuseInitialState;
+
+    @Option(name = "-metrics-port", usage = "Serve analysis metrics in Prometheus text format at http://127.0.0.1:PORT/metrics (0 for any free port)")
+    private int metricsPort = -1;
+
+    @Option(name = "-metrics-file", usage = "Periodically write a JSON snapshot of the analysis metrics to the given file")
+    private Path metricsFile;
+
+    @Option(name = "-profile", usage = "Report the functions, contexts and blocks that take the most analysis time")
+    private boolean profile;
+
+    @Option(name = "-profile-top", usage = "Number of top contributors reported by -profile")
+    private int profileTop = 20;
+
+    @Option(name = "-profile-stacks", usage = "Write the profile of -profile as collapsed stacks (for flame graphs) to the given file")
+    private Path profileStacksFile;
+
     @Argument
     private List<Path> arguments = new ArrayList<>();
 
@@ -364,6 +397,17 @@ public class OptionValues {
         if (callbackGraphStats != that.callbackGraphStats) return false;
         if (callbackGraphAnalysis != that.callbackGraphAnalysis) return false;
         if (inspector != that.inspector) return false;
+        if (persistentStore != that.persistentStore) return false;
+        if (resultCacheDir != null ? !resultCacheDir.equals(that.resultCacheDir) : that.resultCacheDir != null) return false;
+        if (metricsPort != that.metricsPort) return false;
+        if (metricsFile != null ? !metricsFile.equals(that.metricsFile) : that.metricsFile != null) return false;
+        if (profile != that.profile) return false;
+        if (profileTop != that.profileTop) return false;
+        if (profileStacksFile != null ? !profileStacksFile.equals(that.profileStacksFile) : that.profileStacksFile != null) return false;
+        if (reuseInitialState != that.reuseInitialState) return false;
+        if (bucketWorkList != that.bucketWorkList) return false;
+        if (weakTopologicalWorkList != that.weakTopologicalWorkList) return false;
+        if (parallelParsingThreads != that.parallelParsingThreads) return false;
         if (unsoundnessString != null ? !unsoundnessString.equals(that.unsoundnessString) : that.unsoundnessString != null)
             return false;
         if (unsoundness != null ? !unsoundness.equals(that.unsoundness) : that.unsoundness != null) return false;
@@ -453,6 +497,17 @@ public class OptionValues {
         result = 31 * result + (callbackGraphAnalysis ? 1 : 0);
         result = 31 * result + (printCallbackGraph ? 1 : 0);
         result = 31 * result + boundedSize;
+        result = 31 * result + (persistentStore ? 1 : 0);
+        result = 31 * result + (resultCacheDir != null ? resultCacheDir.hashCode() : 0);
+        result = 31 * result + metricsPort;
+        result = 31 * result + (metricsFile != null ? metricsFile.hashCode() : 0);
+        result = 31 * result + (profile ? 1 : 0);
+        result = 31 * result + profileTop;
+        result = 31 * result + (profileStacksFile != null ? profileStacksFile.hashCode() : 0);
+        result = 31 * result + (reuseInitialState ? 1 : 0);
+        result = 31 * result + (bucketWorkList ? 1 : 0);
+        result = 31 * result + (weakTopologicalWorkList ? 1 : 0);
+        result = 31 * result + parallelParsingThreads;
         result = 31 * result + (soundnessTesterOptions != null ? soundnessTesterOptions.hashCode() : 0);
         return result;
     }
@@ -1113,6 +1168,9 @@ public class OptionValues {
         if (arguments == null || arguments.isEmpty()) {
             throw new CmdLineException(null, "No arguments provided!", null);
         }
+        if (profileTop <= 0) {
+            throw new CmdLineException(null, "-profile-top must be positive", null);
+        }
     }
 
     public void enablePolyfillMDN() {
@@ -1374,4 +1432,120 @@ public class OptionValues {
     public boolean isCallbackGraphPrintEnabled() {
         return this.printCallbackGraph;
     }
+
+    public boolean isParallelParsingEnabled() {
+        return parallelParsingThreads > 1;
+    }
+
+    public int getParallelParsingThreads() {
+        return parallelParsingThreads;
+    }
+
+    public void enableParallelParsing(int threads) {
+        this.parallelParsingThreads = threads;
+    }
+
+    public void disableParallelParsing() {
+        this.parallelParsingThreads = -1;
+    }
+
+    public boolean isBucketWorkListEnabled() {
+        return bucketWorkList;
+    }
+
+    public void enableBucketWorkList() {
+        bucketWorkList = true;
+    }
+
+    public void disableBucketWorkList() {
+        bucketWorkList = false;
+    }
+
+    public boolean isWeakTopologicalWorkListEnabled() {
+        return weakTopologicalWorkList;
+    }
+
+    public void enableWeakTopologicalWorkList() {
+        weakTopologicalWorkList = true;
+    }
+
+    public void disableWeakTopologicalWorkList() {
+        weakTopologicalWorkList = false;
+    }
+
+    public boolean isPersistentStoreEnabled() {
+        return persistentStore;
+    }
+
+    public void enablePersistentStore() {
+        persistentStore = true;
+    }
+
+    public void disablePersistentStore() {
+        persistentStore = false;
+    }
+
+    public Path getResultCacheDir() {
+        return resultCacheDir;
+    }
+
+    public void setResultCacheDir(Path resultCacheDir) {
+        this.resultCacheDir = resultCacheDir;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public Path getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setMetricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public boolean isProfileEnabled() {
+        return profile;
+    }
+
+    public void enableProfile() {
+        profile = true;
+    }
+
+    public void disableProfile() {
+        profile = false;
+    }
+
+    public int getProfileTop() {
+        return profileTop;
+    }
+
+    public void setProfileTop(int profileTop) {
+        this.profileTop = profileTop;
+    }
+
+    public Path getProfileStacksFile() {
+        return profileStacksFile;
+    }
+
+    public void setProfileStacksFile(Path profileStacksFile) {
+        this.profileStacksFile = profileStacksFile;
+    }
+
+    public boolean isReuseInitialStateEnabled() {
+        return reuseInitialState;
+    }
+
+    public void enableReuseInitialState() {
+        reuseInitialState = true;
+    }
+
+    public void disableReuseInitialState() {
+        reuseInitialState = false;
+    }
 }
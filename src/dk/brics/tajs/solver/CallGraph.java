@@ -21,6 +21,7 @@ import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.Function;
 import dk.brics.tajs.flowgraph.jsnodes.CallNode;
 import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.Pair;
 import dk.brics.tajs.util.Strings;
 import org.apache.log4j.Logger;
 
@@ -57,6 +58,28 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
      */
     private Map<NodeAndContext<ContextType>, Map<BlockAndContext<ContextType>, CallEdgeType>> call_edge_info; // default is empty maps
 
+    /**
+     * Cache of the incoming call edges of (callee entry, callee context), see {@link #getIncomingCallEdges(BlockAndContext)}.
+     * An entry is removed when a reverse edge is added to its (callee entry, callee context).
+     * The call edge states are not copied, so changes of the states do not invalidate the entries.
+     */
+    private Map<BlockAndContext<ContextType>, List<Pair<ReverseEdge<ContextType>, CallEdgeType>>> incoming_call_edges;
+
+    private int incoming_call_edges_hits;
+
+    private int incoming_call_edges_misses;
+
+    /**
+     * Number of calls that were covered by the existing results of the callee in the callee context,
+     * which act as the function summary for the relevant inputs selected by the context sensitivity strategy.
+     */
+    private int function_summary_hits;
+
+    /**
+     * Number of calls that changed the entry state of the callee, so the callee was analyzed (again).
+     */
+    private int function_summary_misses;
+
     /**
      * Map from basic block and context to occurrence order.
      */
@@ -106,6 +129,7 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
     public CallGraph() {
         call_sources = newMap();
         call_edge_info = newMap();
+        incoming_call_edges = newMap();
         block_context_order = newMap();
     }
 
@@ -141,12 +165,38 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         return changed;
     }
 
+    /**
+     * Returns the number of calls that were covered by the existing results of the callee.
+     */
+    public int getFunctionSummaryHits() {
+        return function_summary_hits;
+    }
+
+    /**
+     * Returns the number of calls that led to analyzing the callee.
+     */
+    public int getFunctionSummaryMisses() {
+        return function_summary_misses;
+    }
+
+    /**
+     * Records whether a call was covered by the existing results of the callee.
+     */
+    public void registerFunctionSummaryUse(boolean hit) {
+        if (hit)
+            function_summary_hits++;
+        else
+            function_summary_misses++;
+    }
+
     /**
      * Adds a reverse edge.
      */
     public void addSource(AbstractNode caller, ContextType caller_context, BasicBlock callee, ContextType callee_context,
                           ContextType edge_context, boolean implicit) {
-        addToMapSet(call_sources, new BlockAndContext<>(callee, callee_context), new ReverseEdge<>(caller, caller_context, edge_context, implicit));
+        BlockAndContext<ContextType> bc = new BlockAndContext<>(callee, callee_context);
+        addToMapSet(call_sources, bc, new ReverseEdge<>(caller, caller_context, edge_context, implicit));
+        incoming_call_edges.remove(bc);
     }
 
     /**
@@ -184,6 +234,39 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         return res;
     }
 
+    /**
+     * Returns the reverse edges that have the given basic block as target for a given callee context,
+     * together with the corresponding call edges.
+     * The result is cached until a reverse edge is added to the given basic block and callee context.
+     */
+    public List<Pair<ReverseEdge<ContextType>, CallEdgeType>> getIncomingCallEdges(BlockAndContext<ContextType> bc) {
+        List<Pair<ReverseEdge<ContextType>, CallEdgeType>> res = incoming_call_edges.get(bc);
+        if (res != null) {
+            incoming_call_edges_hits++;
+            return res;
+        }
+        incoming_call_edges_misses++;
+        res = newList();
+        for (ReverseEdge<ContextType> cs : getSources(bc))
+            res.add(Pair.make(cs, getCallEdge(cs.getCallNode(), cs.getCallerContext(), bc.getBlock(), cs.getEdgeContext())));
+        incoming_call_edges.put(bc, res);
+        return res;
+    }
+
+    /**
+     * Returns the number of calls to {@link #getIncomingCallEdges(BlockAndContext)} that were answered by the cache.
+     */
+    public int getIncomingCallEdgesCacheHits() {
+        return incoming_call_edges_hits;
+    }
+
+    /**
+     * Returns the number of calls to {@link #getIncomingCallEdges(BlockAndContext)} that were not answered by the cache.
+     */
+    public int getIncomingCallEdgesCacheMisses() {
+        return incoming_call_edges_misses;
+    }
+
     /**
      * Returns the specified call edge info.
      */
@@ -343,6 +426,8 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         sb.append("Total invocations:                                                            ").append(total).append("\n");
         sb.append("Total invocations with single target:                                         ").append(single).append("\n");
         sb.append("Single target invocations:                                                    ").append(total > 0 ? (100 * ((float) single) / total) + "%" : "-").append("\n");
+        sb.append("Function summary hits:                                                        ").append(function_summary_hits).append("\n");
+        sb.append("Function summary misses:                                                      ").append(function_summary_misses).append("\n");
         return sb.toString();
     }
 
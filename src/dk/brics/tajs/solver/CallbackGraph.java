@@ -13,12 +13,12 @@ import dk.brics.tajs.util.Chain;
 import dk.brics.tajs.util.Pair;
 
 import java.io.PrintWriter;
-import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
@@ -54,6 +54,18 @@ public class CallbackGraph {
 
     private List<SchedulePlan> cacheSchedulePlans;
 
+    /**
+     * Copies of the chains that the current graph was built from, see {@link #markBuilt()}.
+     */
+    private Chain<CallbackCallInfo> builtPromiseChain;
+
+    private Chain<CallbackCallInfo> builtTimeIOChain;
+
+    /**
+     * Whether the current graph is the result of building it from the schedule plans and the chains above.
+     */
+    private boolean built;
+
     public CallbackGraph() {
         this.callbackGraph = newMap();
         this.callInfo = newMap();
@@ -66,7 +78,15 @@ public class CallbackGraph {
         this.cacheSchedulePlans = newList();
     }
 
+    /**
+     * Rebuilds the graph from the schedule plans and the current chains.
+     * Skipped if the chains are unchanged since the graph was last built,
+     * as building is deterministic and the result would be the current graph.
+     */
     public void preBuild() {
+        if (built && Objects.equals(currPromiseChain, builtPromiseChain) && Objects.equals(currTimeIOChain, builtTimeIOChain))
+            return;
+        built = false;
         this.callbackGraph = newMap();
         for (SchedulePlan s : schedulePlans) {
             Chain<CallbackCallInfo> chain;
@@ -78,6 +98,16 @@ public class CallbackGraph {
         }
     }
 
+    /**
+     * Records that the graph has been built from the committed schedule plans and the current chains.
+     * Must be called after the schedule plans have been committed.
+     */
+    public void markBuilt() {
+        builtPromiseChain = currPromiseChain != null ? currPromiseChain.clone() : null; // the chains may be modified later
+        builtTimeIOChain = currTimeIOChain != null ? currTimeIOChain.clone() : null;
+        built = cacheSchedulePlans.isEmpty();
+    }
+
     public boolean isAnalyzed(Function function, CallbackContext callbackContext) {
         Boolean isAnalyzed = this.isAnalyzed(
                 new CallbackGraphNode(new AnalysisFunction(function), callbackContext));
@@ -251,45 +281,18 @@ public class CallbackGraph {
     }
 
 
-    private int countNumberOfConnectedPairs() {
-        Map<CallbackGraphNode, Set<CallbackGraphNode>> reachableNodes =
-                newMap();
-        for (CallbackGraphNode node : this.callbackGraph.keySet())
-            reachableNodes.put(node, newSet());
-        List<CallbackGraphNode> topologicalSorted = inTopologicalOrder();
-        for (CallbackGraphNode node : topologicalSorted) {
-            Set<CallbackGraphEdge> edges = this.callbackGraph.get(node);
-            for (CallbackGraphEdge edge : edges) {
-                Set<CallbackGraphNode> reachSources =
-                        reachableNodes.get(node);
-                reachableNodes.get(edge.getTarget()).add(node);
-                reachableNodes.get(edge.getTarget()).addAll(reachSources);
-            }
-        }
-        return reachableNodes.values()
-                .stream()
-                .mapToInt(Set::size)
-                .sum();
-    }
-
-    private static BigInteger factorial(int n) {
-        BigInteger factorial = BigInteger.valueOf(1);
-        for (long factor = 2; factor <= n; factor++) {
-            factorial = factorial.multiply(BigInteger.valueOf(factor));
-        }
-        return factorial;
-    }
-
-    private int getNumberOfPairs() {
-        int n = this.callbackGraph.size();
-        return factorial(n).divide(factorial(n - 2).multiply(
-                BigInteger.valueOf(2))).intValue();
+    /**
+     * Returns a reachability index of the current graph.
+     */
+    public CallbackGraphReachability getReachability() {
+        return new CallbackGraphReachability(inTopologicalOrder(), this.callbackGraph);
     }
 
     public Double precision() {
         if (this.callbackGraph.isEmpty())
             return null;
-        double precision = (double) this.countNumberOfConnectedPairs() / getNumberOfPairs();
+        CallbackGraphReachability reachability = getReachability();
+        double precision = (double) reachability.countConnectedPairs() / reachability.countPairs();
         if (precision > 1.0 || precision < 0) {
             throw new AnalysisException("Computed callback graph precision is wrong");
         }
@@ -530,6 +533,7 @@ public class CallbackGraph {
     public void toCallbackGraph(Chain<CallbackCallInfo> chain) {
         if (chain == null)
             return;
+        built = false; // until markBuilt is called
         Chain<CallbackCallInfo> c = chain;
         Set<CallbackCallInfo> pendingEdges = newSet();
         boolean flag = true;
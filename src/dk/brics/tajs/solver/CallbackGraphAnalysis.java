@@ -22,10 +22,45 @@ public class CallbackGraphAnalysis {
 
 	private CallbackGraph cbg;
 
+	private CallbackGraphReachability reachability;
+
 	public CallbackGraphAnalysis( CallbackGraph cbg ) {
 		this.cbg = cbg;
 	}
 
+	/**
+	 * Gets the reachability index of the {@code CallbackGraph},
+	 * computing it on the first use.
+	 * @return The reachability index.
+	 */
+	private CallbackGraphReachability getReachability() {
+		if ( this.reachability == null ) {
+			this.reachability = this.cbg.getReachability();
+		}
+
+		return this.reachability;
+	}
+
+	/**
+	 * Checks if the first callback is always executed before the second one.
+	 * @param first a node of the {@code CallbackGraph}.
+	 * @param second a node of the {@code CallbackGraph}.
+	 * @return {@code true} if there is a path from {@code first} to {@code second}.
+	 */
+	public boolean happensBefore( CallbackGraphNode first, CallbackGraphNode second ) {
+		return this.getReachability().happensBefore( first, second );
+	}
+
+	/**
+	 * Checks if the execution order of two callbacks is unknown to the analysis.
+	 * @param n1 a node of the {@code CallbackGraph}.
+	 * @param n2 a node of the {@code CallbackGraph}.
+	 * @return {@code true} if the nodes are distinct and neither is reachable from the other.
+	 */
+	public boolean mayRace( CallbackGraphNode n1, CallbackGraphNode n2 ) {
+		return this.getReachability().mayRace( n1, n2 );
+	}
+
 	private static class ValueLocationPosition implements Comparable<ValueLocationPosition> {
 
 		private int line;
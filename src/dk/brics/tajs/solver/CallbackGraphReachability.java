@@ -0,0 +1,96 @@
+package dk.brics.tajs.solver;
+
+import dk.brics.tajs.util.AnalysisException;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.solver.CallbackGraph.CallbackGraphEdge;
+import static dk.brics.tajs.solver.CallbackGraph.CallbackGraphNode;
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Reachability index of a callback graph.
+ * <p>
+ * The nodes are numbered densely in topological order, and the predecessors of each node
+ * (the nodes from which it is reachable through one or more edges) are kept as a bitset over these numbers.
+ * The transitive closure is then computed with one bitset union per edge.
+ * The index is a snapshot; it does not reflect later changes of the graph.
+ */
+public class CallbackGraphReachability {
+
+    private final Map<CallbackGraphNode, Integer> ids;
+
+    private final BitSet[] predecessors;
+
+    /**
+     * Constructs the index of the given graph, whose nodes are given in topological order.
+     */
+    CallbackGraphReachability(List<CallbackGraphNode> topologicalOrder,
+                              Map<CallbackGraphNode, Set<CallbackGraphEdge>> graph) {
+        int n = topologicalOrder.size();
+        ids = newMap();
+        predecessors = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            ids.put(topologicalOrder.get(i), i);
+            predecessors[i] = new BitSet(i);
+        }
+        for (int i = 0; i < n; i++) {
+            for (CallbackGraphEdge edge : graph.get(topologicalOrder.get(i))) {
+                BitSet target = predecessors[getId(edge.getTarget())];
+                target.set(i);
+                target.or(predecessors[i]);
+            }
+        }
+    }
+
+    private int getId(CallbackGraphNode node) {
+        Integer id = ids.get(node);
+        if (id == null)
+            throw new AnalysisException("Node not in callback graph: " + node);
+        return id;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int getNumberOfNodes() {
+        return predecessors.length;
+    }
+
+    /**
+     * Checks whether the first callback is always executed before the second one,
+     * i.e. whether there is a path from the first node to the second.
+     */
+    public boolean happensBefore(CallbackGraphNode first, CallbackGraphNode second) {
+        return predecessors[getId(second)].get(getId(first));
+    }
+
+    /**
+     * Checks whether the execution order of the two callbacks is unknown,
+     * i.e. whether there is no path between the two distinct nodes in either direction.
+     */
+    public boolean mayRace(CallbackGraphNode node1, CallbackGraphNode node2) {
+        return !node1.equals(node2) && !happensBefore(node1, node2) && !happensBefore(node2, node1);
+    }
+
+    /**
+     * Returns the number of pairs of distinct nodes that are connected by a path.
+     */
+    public long countConnectedPairs() {
+        long count = 0;
+        for (BitSet p : predecessors)
+            count += p.cardinality();
+        return count;
+    }
+
+    /**
+     * Returns the number of pairs of distinct nodes.
+     */
+    public long countPairs() {
+        long n = predecessors.length;
+        return n * (n - 1) / 2;
+    }
+}
@@ -238,6 +238,8 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
             if (messages_enabled)
                 return;
             CallGraph<StateType, ContextType, CallEdgeType> cg = the_analysis_lattice_element.getCallGraph();
+            // the existing results of the callee are reused unless the callee entry state changes
+            boolean summary_hit = true;
             // add to existing call edge
             if (cg.addTarget(call_node, caller_context, callee_entry, edge_context, edge_state, sync, analysis, c.getMonitoring())) {
                 // new flow at call edge, transform it relative to the function entry states and contexts
@@ -246,10 +248,13 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
                 cg.addSource(call_node, caller_context, callee_entry, callee_context, edge_context, implicit);
                 // propagate transformed state into function entry
                 if (propagateAndUpdateWorklist(edge_state, callee_entry, callee_context, true)) {
+                    summary_hit = false;
                     // charge the call edge
                     deps.chargeCallEdge(call_node.getBlock(), caller_context, edge_context, callee_entry, callee_context);
                 }
             }
+            if (callee_entry.isEntry())
+                cg.registerFunctionSummaryUse(summary_hit);
             ContextType callee_context = edge_context; // TODO: update this if State.transform doesn't just return the edge context as callee context
             // process existing ordinary/exceptional return flow
             StateType stored_state = current_state;
@@ -419,6 +424,10 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
     /**
      * Scans for messages. Takes one round through all nodes and all contexts without invoking <code>propagate</code>.
      * {@link #solve()} must be called first.
+     * <p>
+     * The scan is sequential: it is not read-only, since unknown-value recovery
+     * writes the recovered values into the stored function entry and call edge states,
+     * and the monitoring and current_node/current_state are shared.
      */
     public void scan() {
         if (the_analysis_lattice_element == null)
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.solver;
+
+/**
+ * Interface for work list strategies with precomputed integer priorities.
+ * <p>
+ * Entries are ordered by rank (lowest first), then group (highest first), then position (lowest first),
+ * and finally by serial number (lowest first).
+ * The priorities of an entry must not change while it is in the work list.
+ * This allows {@link WorkList} to use a bucket queue instead of a comparison-based priority queue.
+ */
+public interface IPrioritizedWorkListStrategy<ContextType extends IContext<?>> extends IWorkListStrategy<ContextType> {
+
+    /**
+     * Returns the number of different ranks.
+     */
+    int getNumberOfRanks();
+
+    /**
+     * Returns the rank of the given entry, between 0 (inclusive) and {@link #getNumberOfRanks()} (exclusive).
+     */
+    int getRank(IEntry<ContextType> e);
+
+    /**
+     * Returns the group of the given entry, a non-negative number.
+     */
+    int getGroup(IEntry<ContextType> e);
+
+    /**
+     * Returns the position of the given entry within its group, a non-negative number.
+     */
+    int getPosition(IEntry<ContextType> e);
+}
@@ -20,10 +20,18 @@ import dk.brics.tajs.flowgraph.BasicBlock;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
 
+import static dk.brics.tajs.util.Collections.newList;
+
 /**
  * Work list used by solver.
  */
@@ -37,17 +45,25 @@ public class WorkList<ContextType extends IContext<?>> {
 
     private Set<Entry> pending_set;
 
-    private PriorityQueue<Entry> pending_queue;
+    private Queue<Entry> pending_queue;
 
     private IWorkListStrategy<ContextType> worklist_strategy;
 
+    private IPrioritizedWorkListStrategy<ContextType> prioritized_strategy; // non-null if pending_queue is a bucket queue
+
     /**
      * Constructs a new empty work list.
+     * If the strategy is a {@link IPrioritizedWorkListStrategy}, a bucket queue is used instead of a priority queue.
      */
     public WorkList(IWorkListStrategy<ContextType> w) {
         worklist_strategy = w;
         pending_set = new HashSet<>();
-        pending_queue = new PriorityQueue<>();
+        if (w instanceof IPrioritizedWorkListStrategy) {
+            prioritized_strategy = (IPrioritizedWorkListStrategy<ContextType>) w;
+            pending_queue = new BucketQueue(prioritized_strategy.getNumberOfRanks());
+        } else {
+            pending_queue = new PriorityQueue<>();
+        }
     }
 
     /**
@@ -57,6 +73,11 @@ public class WorkList<ContextType extends IContext<?>> {
      */
     public boolean add(Entry e) {
         if (pending_set.add(e)) {
+            if (prioritized_strategy != null) {
+                e.rank = prioritized_strategy.getRank(e);
+                e.group = prioritized_strategy.getGroup(e);
+                e.position = prioritized_strategy.getPosition(e);
+            }
             pending_queue.add(e);
             if (log.isDebugEnabled())
                 log.debug("Adding worklist entry for block " + e.b.getIndex());
@@ -124,6 +145,8 @@ public class WorkList<ContextType extends IContext<?>> {
 
         private int hash;
 
+        private int rank, group, position; // only used with bucket queue
+
         /**
          * Constructs a new entry.
          */
@@ -186,4 +209,128 @@ public class WorkList<ContextType extends IContext<?>> {
             return Integer.toString(b.getIndex());
         }
     }
+
+    /**
+     * Bucket queue for work list entries with precomputed priorities, see {@link IPrioritizedWorkListStrategy}.
+     * Insertion takes constant time, removal takes time proportional to the number of non-empty groups divided by the word size.
+     * Entries with the same rank, group and position are removed in insertion order,
+     * which coincides with serial number order as entries are added right after they are created.
+     */
+    private class BucketQueue extends AbstractQueue<Entry> {
+
+        private final List<List<Group>> groups; // indexed by rank and group
+
+        private final BitSet[] nonempty_groups; // indexed by rank
+
+        private int size;
+
+        BucketQueue(int ranks) {
+            groups = newList();
+            nonempty_groups = new BitSet[ranks];
+            for (int i = 0; i < ranks; i++) {
+                groups.add(newList());
+                nonempty_groups[i] = new BitSet();
+            }
+        }
+
+        @Override
+        public boolean offer(Entry e) {
+            List<Group> gs = groups.get(e.rank);
+            while (gs.size() <= e.group)
+                gs.add(null);
+            Group g = gs.get(e.group);
+            if (g == null) {
+                g = new Group();
+                gs.set(e.group, g);
+            }
+            g.add(e);
+            nonempty_groups[e.rank].set(e.group);
+            size++;
+            return true;
+        }
+
+        @Override
+        public Entry poll() {
+            for (int rank = 0; rank < nonempty_groups.length; rank++) {
+                BitSet ne = nonempty_groups[rank];
+                int gi = ne.previousSetBit(ne.length() - 1);
+                if (gi >= 0) {
+                    Group g = groups.get(rank).get(gi);
+                    Entry e = g.poll();
+                    if (g.isEmpty())
+                        ne.clear(gi);
+                    size--;
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Entry peek() {
+            for (int rank = 0; rank < nonempty_groups.length; rank++) {
+                BitSet ne = nonempty_groups[rank];
+                int gi = ne.previousSetBit(ne.length() - 1);
+                if (gi >= 0)
+                    return groups.get(rank).get(gi).peek();
+            }
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            List<Entry> res = newList();
+            for (List<Group> gs : groups)
+                for (Group g : gs)
+                    if (g != null)
+                        for (ArrayDeque<Entry> slot : g.slots)
+                            if (slot != null)
+                                res.addAll(slot);
+            return res.iterator();
+        }
+    }
+
+    /**
+     * Entries of a bucket queue with the same rank and group, indexed by position.
+     */
+    private class Group {
+
+        private final List<ArrayDeque<Entry>> slots = newList();
+
+        private final BitSet nonempty_slots = new BitSet();
+
+        void add(Entry e) {
+            while (slots.size() <= e.position)
+                slots.add(null);
+            ArrayDeque<Entry> slot = slots.get(e.position);
+            if (slot == null) {
+                slot = new ArrayDeque<>();
+                slots.set(e.position, slot);
+            }
+            slot.addLast(e);
+            nonempty_slots.set(e.position);
+        }
+
+        Entry poll() {
+            int i = nonempty_slots.nextSetBit(0);
+            ArrayDeque<Entry> slot = slots.get(i);
+            Entry e = slot.pollFirst();
+            if (slot.isEmpty())
+                nonempty_slots.clear(i);
+            return e;
+        }
+
+        Entry peek() {
+            return slots.get(nonempty_slots.nextSetBit(0)).peekFirst();
+        }
+
+        boolean isEmpty() {
+            return nonempty_slots.isEmpty();
+        }
+    }
 }
@@ -16,42 +16,72 @@
 
 package dk.brics.tajs.util;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Map;
 import java.util.Set;
-
-import static dk.brics.tajs.util.Collections.newMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * A canonicalizer based on object equality and weak references.
+ * Canonicalization cache for deeply immutable objects and immutable sets.
+ * <p>
+ * The canonical instances are only weakly referenced. Entries whose instances have been garbage collected
+ * are removed through a reference queue, so the size of the cache is bounded by the number of live canonical instances.
+ * The cache is thread-safe.
  */
 public class Canonicalizer {
 
-    private static Canonicalizer instance;
+    private static volatile Canonicalizer instance;
+
+    private final ConcurrentMap<WeakKey, WeakKey> canonicalInstances = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
 
-    private final Map<DeepImmutable, WeakReference<DeepImmutable>> canonicalInstances = newMap();
+    private final LongAdder cacheHits = new LongAdder();
 
-    private int cacheHits = 0;
+    private final LongAdder cacheMisses = new LongAdder();
 
-    private int cacheMisses = 0;
+    private final LongAdder evictions = new LongAdder();
 
     public static void reset() {
         instance = null;
     }
 
     public static Canonicalizer get() {
-        if (instance == null) {
-            instance = new Canonicalizer();
+        Canonicalizer c = instance;
+        if (c == null) {
+            synchronized (Canonicalizer.class) {
+                c = instance;
+                if (c == null) {
+                    c = new Canonicalizer();
+                    instance = c;
+                }
+            }
         }
-        return instance;
+        return c;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
     }
 
-    public int getCacheHits() {
-        return cacheHits;
+    public long getCacheMisses() {
+        return cacheMisses.sum();
     }
 
-    public int getCacheMisses() {
-        return cacheMisses;
+    /**
+     * Returns the number of entries that have been removed because their canonical instance was garbage collected.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the current number of entries.
+     */
+    public int size() {
+        return canonicalInstances.size();
     }
 
     /**
@@ -59,53 +89,120 @@ public class Canonicalizer {
      */
     @SuppressWarnings("unchecked")
     public <T extends DeepImmutable> T canonicalize(T instance) {
-        WeakReference<T> canonical = (WeakReference<T>) canonicalInstances.get(instance);
-        if (canonical == null || canonical.get() == null) {
-            canonicalInstances.put(instance, new WeakReference<>(instance));
-            cacheMisses++;
-            return instance;
-        } else {
-            cacheHits++;
-            return canonical.get();
-        }
+        return (T) intern(instance);
     }
 
     /**
      * Canonicalizes a set into an immutable version.
      */
+    @SuppressWarnings("unchecked")
     public <T extends DeepImmutable> Set<T> canonicalizeSet(Set<T> set) {
-        return canonicalize(new ImmutableBox<>(java.util.Collections.unmodifiableSet(set))).get();
+        return (Set<T>) intern(java.util.Collections.unmodifiableSet(set));
+    }
+
+    private Object intern(Object o) {
+        expungeCollected();
+        LookupKey lookup = new LookupKey(o);
+        WeakKey existing = canonicalInstances.get(lookup);
+        while (true) {
+            if (existing != null) {
+                Object canonical = existing.get();
+                if (canonical != null) {
+                    cacheHits.increment();
+                    return canonical;
+                }
+                // collected but not yet expunged
+                if (canonicalInstances.remove(existing, existing))
+                    evictions.increment();
+            }
+            WeakKey key = new WeakKey(o, lookup.hash, collected);
+            existing = canonicalInstances.putIfAbsent(key, key);
+            if (existing == null) {
+                cacheMisses.increment();
+                return o;
+            }
+        }
     }
 
     /**
-     * Immutable-type wrapper for mutable objects. The wrapped object must be immutable in practice!
+     * Removes the entries whose canonical instances have been garbage collected.
      */
-    private static class ImmutableBox<T> implements DeepImmutable {
+    private void expungeCollected() {
+        Object r;
+        while ((r = collected.poll()) != null) {
+            WeakKey key = (WeakKey) r;
+            if (canonicalInstances.remove(key, key))
+                evictions.increment();
+        }
+    }
+
+    private static boolean equalsStructurally(Object o1, Object o2) {
+        if (o1 == o2)
+            return true;
+        if (o1 == null || o2 == null)
+            return false;
+        if (o1 instanceof DeepImmutable)
+            return ((DeepImmutable) o1).equalsStructurally(o2);
+        return o1.equals(o2);
+    }
 
-        private final T element;
+    /**
+     * Weakly referenced key, used for the entries of the cache.
+     */
+    private static final class WeakKey extends WeakReference<Object> {
 
-        private final int hashCode;
+        private final int hash;
 
-        public ImmutableBox(T element) {
-            this.element = element;
-            this.hashCode = element.hashCode();
+        private WeakKey(Object o, int hash, ReferenceQueue<Object> queue) {
+            super(o, queue);
+            this.hash = hash;
         }
 
         @Override
         public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            ImmutableBox<?> that = (ImmutableBox<?>) o;
-            return element != null ? element.equals(that.element) : that.element == null;
+            if (this == o)
+                return true;
+            if (o instanceof WeakKey)
+                return equalsStructurally(get(), ((WeakKey) o).get());
+            if (o instanceof LookupKey)
+                return equalsStructurally(get(), ((LookupKey) o).element);
+            return false;
         }
 
         @Override
         public int hashCode() {
-            return hashCode;
+            return hash;
         }
+    }
+
+    /**
+     * Strongly referenced key, used for lookups only.
+     */
+    private static final class LookupKey {
+
+        private final Object element;
+
+        private final int hash;
 
-        public T get() {
-            return element;
+        private LookupKey(Object element) {
+            this.element = element;
+            this.hash = element.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o instanceof WeakKey)
+                return equalsStructurally(element, ((WeakKey) o).get());
+            if (o instanceof LookupKey)
+                return equalsStructurally(element, ((LookupKey) o).element);
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 }
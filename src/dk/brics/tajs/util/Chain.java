@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newSet;
 
 
@@ -61,17 +62,18 @@ public class Chain<T> {
         if (this.next == null)
             return this.elements;
         Set<T> elements = newSet(this.elements);
-        elements.addAll(this.next.getAllElements());
+        for (Chain<T> c = this.next; c != null; c = c.next)
+            elements.addAll(c.elements);
         return elements;
     }
 
     public void appendLast(Chain<T> elem) {
         if (elem == null)
             return;
-        if (this.next == null)
-            this.next = elem;
-        else
-            this.next.appendLast(elem);
+        Chain<T> last = this;
+        while (last.next != null)
+            last = last.next;
+        last.next = elem;
     }
 
     public void appendLast(Set<T> elements) {
@@ -139,38 +141,57 @@ public class Chain<T> {
         return joinAlt(p1.next, p2.next, accum);
     }
 
+    /**
+     * Joins the two chains level by level.
+     * The levels are joined from the end, and the longer chain contributes its remaining levels unchanged.
+     * If removeDuplicates is set, an element is only kept at its last level.
+     */
     public static <T> Chain<T> join(Chain<T> p1, Chain<T> p2,
                                     boolean removeDuplicates) {
-        if (p1 == null)
-            return p2;
-        if (p2 == null)
-            return p1;
-        Chain<T> newChain = join(p1.next, p2.next, removeDuplicates);
-        Set<T> jointCalls = newSet();
-        // TODO revisit.
-        if (newChain != null && removeDuplicates) {
-            jointCalls.addAll(p1.elements
-                    .stream()
-                    .filter(x -> !newChain.has(x))
-                    .collect(Collectors.toSet()));
-            jointCalls.addAll(p2.elements
-                    .stream()
-                    .filter(x -> !newChain.has(x))
-                    .collect(Collectors.toSet()));
-            if (jointCalls.isEmpty())
-                return newChain;
-        } else {
-            jointCalls.addAll(p1.elements);
-            jointCalls.addAll(p2.elements);
+        List<Chain<T>> levels1 = newList();
+        List<Chain<T>> levels2 = newList();
+        while (p1 != null && p2 != null) {
+            levels1.add(p1);
+            levels2.add(p2);
+            p1 = p1.next;
+            p2 = p2.next;
+        }
+        Chain<T> newChain = p1 != null ? p1 : p2;
+        // the elements of newChain, maintained instead of searching newChain for every element
+        Set<T> tailElements = newSet();
+        if (removeDuplicates)
+            for (Chain<T> c = newChain; c != null; c = c.next)
+                tailElements.addAll(c.elements);
+        for (int i = levels1.size() - 1; i >= 0; i--) {
+            Set<T> jointCalls = newSet();
+            // TODO revisit.
+            if (newChain != null && removeDuplicates) {
+                jointCalls.addAll(levels1.get(i).elements
+                        .stream()
+                        .filter(x -> !tailElements.contains(x))
+                        .collect(Collectors.toSet()));
+                jointCalls.addAll(levels2.get(i).elements
+                        .stream()
+                        .filter(x -> !tailElements.contains(x))
+                        .collect(Collectors.toSet()));
+                if (jointCalls.isEmpty())
+                    continue;
+            } else {
+                jointCalls.addAll(levels1.get(i).elements);
+                jointCalls.addAll(levels2.get(i).elements);
+            }
+            newChain = new Chain<>(jointCalls, newChain);
+            if (removeDuplicates)
+                tailElements.addAll(jointCalls);
         }
-        return new Chain<>(jointCalls, newChain);
+        return newChain;
     }
 
     public boolean has(T elem) {
-        if (this.next == null)
-            return this.elements.contains(elem);
-        boolean contains = this.elements.contains(elem);
-        return contains || this.next.has(elem);
+        for (Chain<T> c = this; c != null; c = c.next)
+            if (c.elements.contains(elem))
+                return true;
+        return false;
     }
 
     public boolean isEmpty() {
@@ -214,19 +235,17 @@ public class Chain<T> {
 
     public int occurrences(T elem) {
         int occ = 0;
-        if (this.elements.contains(elem))
-            occ = 1;
-        if (this.next == null)
-            return occ;
-        else
-            return occ + this.next.occurrences(elem);
+        for (Chain<T> c = this; c != null; c = c.next)
+            if (c.elements.contains(elem))
+                occ++;
+        return occ;
     }
 
     public int size() {
-        if (this.next == null)
-            return 1;
-        else
-            return 1 + this.next.size();
+        int size = 0;
+        for (Chain<T> c = this; c != null; c = c.next)
+            size++;
+        return size;
     }
 
     public void replaceElement(T elem1, T elem2) {
@@ -262,9 +281,13 @@ public class Chain<T> {
     }
 
     public Chain<T> clone() {
-        return new Chain<>(
-                newSet(this.elements),
-                next != null ? next.clone() : null);
+        Chain<T> clone = new Chain<>(newSet(this.elements), null);
+        Chain<T> last = clone;
+        for (Chain<T> c = this.next; c != null; c = c.next) {
+            last.next = new Chain<>(newSet(c.elements), null);
+            last = last.next;
+        }
+        return clone;
     }
 
     @Override
@@ -272,16 +295,23 @@ public class Chain<T> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        Chain<?> chain = (Chain<?>) o;
-
-        if (elements != null ? !elements.equals(chain.elements) : chain.elements != null) return false;
-        return next != null ? next.equals(chain.next) : chain.next == null;
+        Chain<?> c1 = this;
+        Chain<?> c2 = (Chain<?>) o;
+        while (c1 != null && c2 != null) {
+            if (c1 == c2) return true; // shared tail
+            if (c1.elements != null ? !c1.elements.equals(c2.elements) : c2.elements != null) return false;
+            c1 = c1.next;
+            c2 = c2.next;
+        }
+        return c1 == c2;
     }
 
     @Override
     public int hashCode() {
-        int result = elements != null ? elements.hashCode() : 0;
-        result = 31 * result + (next != null ? next.hashCode() : 0);
+        // same as 31 * elements.hashCode() + next.hashCode(), without recursion
+        int result = 0;
+        for (Chain<T> c = this; c != null; c = c.next)
+            result += 31 * (c.elements != null ? c.elements.hashCode() : 0);
         return result;
     }
 
@@ -23,4 +23,11 @@ package dk.brics.tajs.util;
  */
 public interface DeepImmutable {
 
+    /**
+     * Checks whether this object is structurally equal to the given one.
+     * Used by {@link Canonicalizer} for classes where {@link Object#equals} is object identity.
+     */
+    default boolean equalsStructurally(Object o) {
+        return equals(o);
+    }
 }
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dk.brics.tajs.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * Hash map represented as a hash array mapped trie.
+ * {@link #fork()} makes a copy in constant time by sharing the trie between the two maps;
+ * subsequent updates of either map copy only the path from the root to the affected entry.
+ * Nodes that have been created by a map since it was last forked are updated in place.
+ * Shared subtries can be skipped when comparing two maps, see {@link #diff(PersistentHashMap, PersistentHashMap)}.
+ * Keys cannot be null. Iterators operate on a snapshot of the map.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final String NULL_KEY = "PersistentHashMap does not permit null keys";
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * The root node, null if the map is empty.
+     */
+    private BitmapNode root;
+
+    private int size;
+
+    /**
+     * Nodes created with this owner are not shared with other maps and may be updated in place.
+     */
+    private Object owner;
+
+    /**
+     * Set if the nodes with the current owner may be referenced from a fork or an iterator.
+     * The owner is then replaced at the next update, so that the shared nodes are copied instead of updated in place.
+     */
+    private boolean shared;
+
+    /**
+     * Set by the update operations if an entry was added or removed.
+     */
+    private boolean size_changed;
+
+    /**
+     * Set by the update operations to the previous value of the affected entry.
+     */
+    private V old_value;
+
+    /**
+     * Constructs a new empty map.
+     */
+    public PersistentHashMap() {
+        owner = new Object();
+    }
+
+    /**
+     * Returns a copy of this map.
+     * Takes constant time, the trie is shared between the two maps.
+     */
+    public PersistentHashMap<K, V> fork() {
+        PersistentHashMap<K, V> m = new PersistentHashMap<>();
+        m.root = root;
+        m.size = size;
+        shared = true;
+        return m;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && find(root, 0, hash(key), key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null)
+            return null;
+        Leaf<K, V> leaf = find(root, 0, hash(key), key);
+        return leaf != null ? leaf.getValue() : null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null)
+            throw new NullPointerException(NULL_KEY);
+        unshare();
+        Leaf<K, V> leaf = new Leaf<>(hash(key), key, value);
+        size_changed = false;
+        old_value = null;
+        if (root == null) {
+            root = new BitmapNode(owner, 1 << index(leaf.hash, 0), new Object[]{leaf});
+            size_changed = true;
+        } else
+            root = put(root, 0, leaf);
+        if (size_changed)
+            size++;
+        V res = old_value;
+        old_value = null;
+        return res;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null || root == null)
+            return null;
+        unshare();
+        size_changed = false;
+        old_value = null;
+        Object r = remove(root, 0, hash(key), key);
+        root = (BitmapNode) r; // the root is never collapsed
+        if (size_changed)
+            size--;
+        V res = old_value;
+        old_value = null;
+        return res;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new LeafIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry))
+                    return false;
+                Entry<?, ?> e = (Entry<?, ?>) o;
+                if (e.getKey() == null)
+                    return false;
+                Leaf<K, V> leaf = find(root, 0, hash(e.getKey()), e.getKey());
+                return leaf != null && Objects.equals(leaf.getValue(), e.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!contains(o))
+                    return false;
+                PersistentHashMap.this.remove(((Entry<?, ?>) o).getKey());
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                PersistentHashMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns the keys whose entries differ between the two maps, i.e. keys that are only in one of the maps
+     * or are mapped to values that are not the same object.
+     * Subtries that are shared by the two maps are skipped.
+     */
+    public static <K, V> List<K> diff(PersistentHashMap<K, V> m1, PersistentHashMap<K, V> m2) {
+        List<K> res = newList();
+        diff(m1.root, m2.root, 0, res);
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> void diff(Object n1, Object n2, int shift, List<K> res) {
+        if (n1 == n2)
+            return;
+        if (n1 instanceof BitmapNode && n2 instanceof BitmapNode) {
+            BitmapNode b1 = (BitmapNode) n1;
+            BitmapNode b2 = (BitmapNode) n2;
+            int bits = b1.bitmap | b2.bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+                Object s1 = (b1.bitmap & bit) != 0 ? b1.slots[Integer.bitCount(b1.bitmap & (bit - 1))] : null;
+                Object s2 = (b2.bitmap & bit) != 0 ? b2.slots[Integer.bitCount(b2.bitmap & (bit - 1))] : null;
+                diff(s1, s2, shift + BITS, res);
+            }
+            return;
+        }
+        // different shapes, compare the entries one by one
+        for (Leaf<K, V> leaf : PersistentHashMap.<K, V>leaves(n1)) {
+            Leaf<K, V> other = find(n2, shift, leaf.hash, leaf.getKey());
+            if (other == null || other.getValue() != leaf.getValue())
+                res.add(leaf.getKey());
+        }
+        for (Leaf<K, V> leaf : PersistentHashMap.<K, V>leaves(n2))
+            if (find(n1, shift, leaf.hash, leaf.getKey()) == null)
+                res.add(leaf.getKey());
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int index(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    /**
+     * Finds the entry for the given key in the given subtrie, or returns null if absent.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Leaf<K, V> find(Object n, int shift, int hash, Object key) {
+        while (n != null) {
+            if (n instanceof BitmapNode) {
+                BitmapNode b = (BitmapNode) n;
+                int bit = 1 << index(hash, shift);
+                if ((b.bitmap & bit) == 0)
+                    return null;
+                n = b.slots[Integer.bitCount(b.bitmap & (bit - 1))];
+                shift += BITS;
+            } else if (n instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) n;
+                return leaf.hash == hash && leaf.getKey().equals(key) ? leaf : null;
+            } else {
+                CollisionNode c = (CollisionNode) n;
+                if (c.hash != hash)
+                    return null;
+                for (Leaf<?, ?> leaf : c.leaves)
+                    if (leaf.getKey().equals(key))
+                        return (Leaf<K, V>) leaf;
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entries in the given subtrie.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> List<Leaf<K, V>> leaves(Object n) {
+        List<Leaf<K, V>> res = newList();
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        if (n != null)
+            pending.push(n);
+        while (!pending.isEmpty()) {
+            Object m = pending.pop();
+            if (m instanceof Leaf)
+                res.add((Leaf<K, V>) m);
+            else if (m instanceof BitmapNode)
+                for (Object s : ((BitmapNode) m).slots)
+                    pending.push(s);
+            else
+                for (Leaf<?, ?> leaf : ((CollisionNode) m).leaves)
+                    res.add((Leaf<K, V>) leaf);
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BitmapNode put(BitmapNode n, int shift, Leaf<K, V> leaf) {
+        int bit = 1 << index(leaf.hash, shift);
+        int idx = Integer.bitCount(n.bitmap & (bit - 1));
+        if ((n.bitmap & bit) == 0) {
+            Object[] slots = new Object[n.slots.length + 1];
+            System.arraycopy(n.slots, 0, slots, 0, idx);
+            slots[idx] = leaf;
+            System.arraycopy(n.slots, idx, slots, idx + 1, n.slots.length - idx);
+            size_changed = true;
+            return new BitmapNode(owner, n.bitmap | bit, slots);
+        }
+        Object slot = n.slots[idx];
+        Object new_slot;
+        if (slot instanceof BitmapNode)
+            new_slot = put((BitmapNode) slot, shift + BITS, leaf);
+        else if (slot instanceof Leaf) {
+            Leaf<K, V> l = (Leaf<K, V>) slot;
+            if (l.hash == leaf.hash && l.getKey().equals(leaf.getKey())) {
+                old_value = l.getValue();
+                if (l.getValue() == leaf.getValue())
+                    return n;
+                new_slot = leaf;
+            } else {
+                size_changed = true;
+                new_slot = merge(l, l.hash, leaf, shift + BITS);
+            }
+        } else
+            new_slot = put((CollisionNode) slot, shift + BITS, leaf);
+        if (new_slot == slot)
+            return n;
+        return set(n, idx, new_slot);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object put(CollisionNode c, int shift, Leaf<K, V> leaf) {
+        if (c.hash != leaf.hash) {
+            size_changed = true;
+            return merge(c, c.hash, leaf, shift);
+        }
+        for (int i = 0; i < c.leaves.length; i++) {
+            Leaf<K, V> l = (Leaf<K, V>) c.leaves[i];
+            if (l.getKey().equals(leaf.getKey())) {
+                old_value = l.getValue();
+                if (l.getValue() == leaf.getValue())
+                    return c;
+                Leaf<?, ?>[] leaves = c.leaves.clone();
+                leaves[i] = leaf;
+                return new CollisionNode(c.hash, leaves);
+            }
+        }
+        Leaf<?, ?>[] leaves = new Leaf<?, ?>[c.leaves.length + 1];
+        System.arraycopy(c.leaves, 0, leaves, 0, c.leaves.length);
+        leaves[c.leaves.length] = leaf;
+        size_changed = true;
+        return new CollisionNode(c.hash, leaves);
+    }
+
+    /**
+     * Makes a subtrie containing the given existing leaf or collision node and the given new leaf, which has a different key.
+     */
+    private Object merge(Object existing, int existing_hash, Leaf<K, V> leaf, int shift) {
+        if (existing_hash == leaf.hash) // only reachable if existing is a leaf
+            return new CollisionNode(leaf.hash, new Leaf<?, ?>[]{(Leaf<?, ?>) existing, leaf});
+        int i1 = index(existing_hash, shift);
+        int i2 = index(leaf.hash, shift);
+        if (i1 == i2)
+            return new BitmapNode(owner, 1 << i1, new Object[]{merge(existing, existing_hash, leaf, shift + BITS)});
+        return new BitmapNode(owner, (1 << i1) | (1 << i2), i1 < i2 ? new Object[]{existing, leaf} : new Object[]{leaf, existing});
+    }
+
+    /**
+     * Removes the entry for the given key from the given subtrie.
+     * Returns the new subtrie, which may be a single leaf or collision node (except at the root) or null if empty.
+     */
+    @SuppressWarnings("unchecked")
+    private Object remove(BitmapNode n, int shift, int hash, Object key) {
+        int bit = 1 << index(hash, shift);
+        if ((n.bitmap & bit) == 0)
+            return n;
+        int idx = Integer.bitCount(n.bitmap & (bit - 1));
+        Object slot = n.slots[idx];
+        Object new_slot;
+        if (slot instanceof BitmapNode)
+            new_slot = remove((BitmapNode) slot, shift + BITS, hash, key);
+        else if (slot instanceof Leaf) {
+            Leaf<K, V> l = (Leaf<K, V>) slot;
+            if (l.hash != hash || !l.getKey().equals(key))
+                return n;
+            old_value = l.getValue();
+            size_changed = true;
+            new_slot = null;
+        } else
+            new_slot = remove((CollisionNode) slot, hash, key);
+        if (new_slot == slot)
+            return n;
+        if (new_slot == null) {
+            if (n.slots.length == 1)
+                return null;
+            Object[] slots = new Object[n.slots.length - 1];
+            System.arraycopy(n.slots, 0, slots, 0, idx);
+            System.arraycopy(n.slots, idx + 1, slots, idx, slots.length - idx);
+            if (shift > 0 && slots.length == 1 && !(slots[0] instanceof BitmapNode))
+                return slots[0]; // collapse into the parent
+            return new BitmapNode(owner, n.bitmap & ~bit, slots);
+        }
+        if (shift > 0 && n.slots.length == 1 && !(new_slot instanceof BitmapNode))
+            return new_slot; // collapse into the parent
+        return set(n, idx, new_slot);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object remove(CollisionNode c, int hash, Object key) {
+        if (c.hash != hash)
+            return c;
+        for (int i = 0; i < c.leaves.length; i++) {
+            Leaf<K, V> l = (Leaf<K, V>) c.leaves[i];
+            if (l.getKey().equals(key)) {
+                old_value = l.getValue();
+                size_changed = true;
+                if (c.leaves.length == 2)
+                    return c.leaves[1 - i];
+                Leaf<?, ?>[] leaves = new Leaf<?, ?>[c.leaves.length - 1];
+                System.arraycopy(c.leaves, 0, leaves, 0, i);
+                System.arraycopy(c.leaves, i + 1, leaves, i, leaves.length - i);
+                return new CollisionNode(c.hash, leaves);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Takes a fresh owner if the nodes of the current owner are shared.
+     */
+    private void unshare() {
+        if (shared) {
+            owner = new Object();
+            shared = false;
+        }
+    }
+
+    /**
+     * Replaces a slot of the given node, in place if the node is owned by this map.
+     */
+    private BitmapNode set(BitmapNode n, int idx, Object slot) {
+        if (n.owner == owner) {
+            n.slots[idx] = slot;
+            return n;
+        }
+        Object[] slots = n.slots.clone();
+        slots[idx] = slot;
+        return new BitmapNode(owner, n.bitmap, slots);
+    }
+
+    /**
+     * Trie node with a bitmap of the used slots.
+     * Each slot contains a leaf, a collision node, or another bitmap node.
+     */
+    private static final class BitmapNode {
+
+        private final Object owner;
+
+        private final int bitmap;
+
+        private final Object[] slots;
+
+        private BitmapNode(Object owner, int bitmap, Object[] slots) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * Trie node with entries whose keys have the same hash.
+     * Collision nodes are small and always copied on update.
+     */
+    private static final class CollisionNode {
+
+        private final int hash;
+
+        private final Leaf<?, ?>[] leaves;
+
+        private CollisionNode(int hash, Leaf<?, ?>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    /**
+     * Immutable map entry.
+     */
+    private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V> {
+
+        private final int hash;
+
+        private Leaf(int hash, K key, V value) {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Iterator over a snapshot of the map.
+     */
+    private final class LeafIterator implements Iterator<Entry<K, V>> {
+
+        private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+        private Leaf<K, V> next;
+
+        private Leaf<K, V> last;
+
+        private LeafIterator() {
+            shared = true; // updates during the iteration must not modify the snapshot
+            if (root != null)
+                pending.push(root);
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (next == null && !pending.isEmpty()) {
+                Object m = pending.pop();
+                if (m instanceof Leaf)
+                    next = (Leaf<K, V>) m;
+                else if (m instanceof BitmapNode)
+                    for (Object s : ((BitmapNode) m).slots)
+                        pending.push(s);
+                else
+                    for (Leaf<?, ?> leaf : ((CollisionNode) m).leaves)
+                        pending.push(leaf);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            PersistentHashMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2009-2018 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.util;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * Cache of analysis results on disk.
+ * The results are keyed by a hash of the TAJS build, the options and the source code of the analyzed program.
+ * If a previous run had the same key, its output from the scan phase is replayed instead of running the analysis.
+ * Only the log output is cached, so the monitors do not observe the analysis of a cached run.
+ */
+public class ResultCache {
+
+    private static Logger log = Logger.getLogger(ResultCache.class);
+
+    private final Path dir;
+
+    private final MessageDigest digest;
+
+    private Path file;
+
+    private CaptureAppender appender;
+
+    /**
+     * Hash of the classes of this TAJS build, computed on first use.
+     */
+    private static byte[] build_identity;
+
+    /**
+     * Constructs a new result cache in the given directory, for the given options.
+     */
+    public ResultCache(Path dir, String options) {
+        this.dir = dir;
+        digest = newDigest();
+        digest.update(getBuildIdentity());
+        add(options);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+    }
+
+    /**
+     * Returns a hash of the jar file or class directory that TAJS is loaded from,
+     * such that results of a different build are not reused.
+     */
+    private static synchronized byte[] getBuildIdentity() {
+        if (build_identity == null) {
+            MessageDigest d = newDigest();
+            CodeSource source = ResultCache.class.getProtectionDomain().getCodeSource();
+            if (source == null)
+                throw new AnalysisException("Unable to determine the TAJS build for the result cache");
+            try {
+                Path location = Paths.get(source.getLocation().toURI());
+                if (Files.isDirectory(location)) {
+                    List<Path> classFiles;
+                    try (Stream<Path> files = Files.walk(location)) {
+                        classFiles = files.filter(f -> f.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                    }
+                    for (Path f : classFiles) {
+                        d.update(location.relativize(f).toString().getBytes(StandardCharsets.UTF_8));
+                        d.update(Files.readAllBytes(f));
+                    }
+                } else
+                    d.update(Files.readAllBytes(location));
+            } catch (IOException | URISyntaxException e) {
+                throw new AnalysisException("Unable to determine the TAJS build for the result cache: " + e.getMessage());
+            }
+            build_identity = d.digest();
+        }
+        return build_identity;
+    }
+
+    /**
+     * Adds source code of the analyzed program to the key.
+     * Must be called before {@link #isHit()}.
+     */
+    public void addSource(String code) {
+        if (file != null)
+            throw new AnalysisException("Result cache key already computed");
+        add(code);
+    }
+
+    private void add(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int n = bytes.length;
+        digest.update(new byte[]{(byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n});
+        digest.update(bytes);
+    }
+
+    private Path getFile() {
+        if (file == null) {
+            StringBuilder b = new StringBuilder();
+            for (byte x : digest.digest())
+                b.append(String.format("%02x", x));
+            file = dir.resolve(b.append(".result").toString());
+        }
+        return file;
+    }
+
+    /**
+     * Checks whether a previous result exists for this key.
+     */
+    public boolean isHit() {
+        return Files.isRegularFile(getFile());
+    }
+
+    /**
+     * Logs the output of the previous run.
+     */
+    public void replay() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(getFile())))) {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Level level = Level.toLevel(in.readInt());
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                log.log(level, new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Unable to read result cache file " + getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts recording the output of the analysis.
+     */
+    public void startCapture() {
+        appender = new CaptureAppender();
+        Logger.getRootLogger().addAppender(appender);
+    }
+
+    /**
+     * Stops recording, without saving the recorded output.
+     * Does nothing if not recording.
+     */
+    public void stopCapture() {
+        if (appender == null)
+            return;
+        Logger.getRootLogger().removeAppender(appender);
+        appender = null;
+    }
+
+    /**
+     * Stops recording and saves the recorded output.
+     */
+    public void saveCapture() {
+        List<LoggingEvent> events = appender.events;
+        stopCapture();
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "tajs", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(events.size());
+                for (LoggingEvent e : events) {
+                    byte[] bytes = String.valueOf(e.getRenderedMessage()).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(e.getLevel().toInt());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            Files.move(tmp, getFile(), StandardCopyOption.REPLACE_EXISTING); // readers never see a partial file
+        } catch (IOException e) {
+            log.warn("Unable to write result cache file " + getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appender that records the logged events at level INFO and above.
+     */
+    private static class CaptureAppender extends AppenderSkeleton {
+
+        private final List<LoggingEvent> events = newList();
+
+        @Override
+        protected void append(LoggingEvent event) {
+            if (event.getLevel().isGreaterOrEqual(Level.INFO))
+                events.add(event);
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+}
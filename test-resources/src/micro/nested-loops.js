@@ -0,0 +1,17 @@
+var a = [];
+for (var i = 0; i < 3; i++) {
+    for (var j = 0; j < 2; j++) {
+        a.push(i * 10 + j);
+    }
+    var k = 0;
+    while (k < i) {
+        a[k] = a[k] + 1;
+        k++;
+    }
+}
+var s = 0;
+for (var n = 0; n < a.length; n++) {
+    s += a[n];
+}
+TAJS_dumpValue(a.length);
+TAJS_dumpValue(s);
@@ -12,6 +12,10 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
         // specific tests
         TestValue.class,
+        TestCanonicalizer.class,
+        TestPersistentHashMap.class,
+        TestObjectLabelSet.class,
+        TestWeakTopologicalOrder.class,
         TestTAJSFunctions.class,
         TestHeap.class,
         TestForIn.class,
@@ -11,6 +11,9 @@ import org.junit.runners.Suite;
         TestSunspider.class,
         TestV8.class,
         TestGoogle.class,
+        TestGoogleBucketWorkList.class,
+        TestGooglePersistentStore.class,
+        TestWeakTopologicalWorkList.class,
         TestGoogle2.class,
 })
 public class RunMediumECMAApps {
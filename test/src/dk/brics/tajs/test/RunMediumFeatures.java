@@ -18,9 +18,16 @@ import org.junit.runners.Suite;
         TestUnrollingTermination.class,
         TestSoundnessTesterAssignments.class,
         TestBoundedUnrolling.class,
+        TestBucketWorkList.class,
         TestMicroStringEscaping.class,
         TestASTInfo.class,
+        TestParallelParsing.class,
+        TestBatch.class,
+        TestResultCache.class,
         TestClosureContextSensitivity.class,
+        TestFunctionSummaries.class,
+        TestProfilingMonitor.class,
+        TestMetricsMonitor.class,
         TestLiteralContextSensitivity.class,
         TestSourceLocations.class,
         TestJQueryPatterns.class,
@@ -0,0 +1,109 @@
+package dk.brics.tajs.test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dk.brics.tajs.Batch;
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Analysis;
+import dk.brics.tajs.monitoring.IAnalysisMonitoring;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.OptionValues;
+import dk.brics.tajs.solver.Message;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link Batch}.
+ */
+@SuppressWarnings("static-method")
+public class TestBatch {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestBatch");
+    }
+
+    private static final String ASYNC_OPTIONS = "-test -async-events -context-sensitive-heap -parameter-sensitivity";
+
+    @Before
+    public void init() {
+        Main.reset();
+    }
+
+    private static List<String> runBatch(String... lines) throws IOException {
+        Path manifest = Files.createTempFile("tajs-batch", ".txt");
+        Path results = Files.createTempFile("tajs-batch", ".jsonl");
+        try {
+            Files.write(manifest, Arrays.asList(lines), StandardCharsets.UTF_8);
+            Batch.run(manifest, results);
+            return Files.readAllLines(results, StandardCharsets.UTF_8);
+        } finally {
+            Files.delete(manifest);
+            Files.delete(results);
+        }
+    }
+
+    private static void assertAllOk(List<String> records, int expected) {
+        assertEquals(expected, records.size());
+        for (String record : records) {
+            JsonObject o = new JsonParser().parse(record).getAsJsonObject();
+            assertEquals(record, "ok", o.get("status").getAsString());
+        }
+    }
+
+    /**
+     * Analyzes the given file in the same JVM as the previous analyses, as done by {@link Batch}.
+     *
+     * @return the sorted messages of the analysis
+     */
+    private static List<String> analyze(boolean reuseInitialState, String file) throws Exception {
+        Main.resetKeepingCanonicalInstances();
+        OptionValues options = new OptionValues();
+        options.parse((ASYNC_OPTIONS + (reuseInitialState ? " -reuse-initial-state " : " ") + file).split(" "));
+        options.checkConsistency();
+        IAnalysisMonitoring monitoring = Monitoring.make();
+        Analysis a = Main.init(options, monitoring, null);
+        Main.run(a);
+        return monitoring.getMessages().stream().sorted().map(Message::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    public void asyncProgramsBackToBack() throws IOException {
+        assertAllOk(runBatch(
+                ASYNC_OPTIONS + " test-resources/src/async/test08.js",
+                ASYNC_OPTIONS + " test-resources/src/async/test10.js"), 2);
+    }
+
+    @Test
+    public void asyncProgramsBackToBackReusingInitialState() throws IOException {
+        // the second and third analyses reuse the initial state, including the default promise reactions and Promise.race
+        assertAllOk(runBatch(
+                ASYNC_OPTIONS + " -reuse-initial-state test-resources/src/async/test08.js",
+                ASYNC_OPTIONS + " -reuse-initial-state test-resources/src/async/test10.js",
+                ASYNC_OPTIONS + " -reuse-initial-state test-resources/src/async/test09.js"), 3);
+    }
+
+    @Test
+    public void reusedInitialStateGivesSameMessages() throws Exception {
+        String[] files = {"test-resources/src/async/test08.js", "test-resources/src/async/test10.js", "test-resources/src/async/test09.js"};
+        List<List<String>> fresh = new ArrayList<>();
+        for (String file : files) {
+            Main.reset();
+            fresh.add(analyze(false, file));
+        }
+        Main.reset();
+        for (int i = 0; i < files.length; i++) { // all but the first analysis reuse the initial state
+            assertEquals(files[i], fresh.get(i), analyze(true, files[i]));
+        }
+    }
+}
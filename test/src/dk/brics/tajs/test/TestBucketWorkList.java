@@ -0,0 +1,69 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Analysis;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.Options;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that the bucket work list gives the same output as the default work list
+ * when no local contexts are used.
+ * (With local contexts, for example with loop unrolling, the two orders differ and so may the output.)
+ */
+@SuppressWarnings("static-method")
+public class TestBucketWorkList {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestBucketWorkList");
+    }
+
+    private static String analyze(String file, boolean bucket) {
+        Main.reset();
+        Options.get().enableTest();
+        if (bucket)
+            Options.get().enableBucketWorkList();
+        Options.get().getArguments().add(Paths.get(file));
+        StringWriter out = new StringWriter();
+        WriterAppender appender = new WriterAppender(new PatternLayout("%m%n"), out);
+        Logger root = Logger.getRootLogger();
+        Level level = root.getLevel();
+        root.setLevel(Level.INFO); // debug output shows the work list order
+        root.addAppender(appender);
+        try {
+            Analysis a = Main.init(Options.get(), Monitoring.make(), null);
+            Main.run(a);
+        } finally {
+            root.removeAppender(appender);
+            root.setLevel(level);
+            Main.reset();
+        }
+        return out.toString();
+    }
+
+    private static void checkSameOutput(String file) {
+        String expected = analyze(file, false);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, analyze(file, true));
+    }
+
+    @Test
+    public void nestedLoops() {
+        checkSameOutput("test-resources/src/micro/nested-loops.js");
+    }
+
+    @Test
+    public void richards() {
+        checkSameOutput("test-resources/src/google/richards.js");
+    }
+}
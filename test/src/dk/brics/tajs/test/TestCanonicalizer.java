@@ -0,0 +1,88 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.Canonicalizer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestCanonicalizer {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestCanonicalizer");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    @Test
+    public void sameInstance() {
+        Value v1 = Value.makeStr("foo").join(Value.makeNum(42));
+        Value v2 = Value.makeNum(42).join(Value.makeStr("foo"));
+        assertSame(v1, v2);
+        assertTrue(Canonicalizer.get().getCacheHits() > 0);
+    }
+
+    @Test
+    public void concurrentCanonicalization() throws Exception {
+        int threads = 8;
+        int values = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<List<Value>>> tasks = newList();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    List<Value> res = newList();
+                    for (int i = 0; i < values; i++)
+                        res.add(Value.makeStr("v" + i).join(Value.makeNum(i)));
+                    return res;
+                });
+            }
+            List<Future<List<Value>>> results = executor.invokeAll(tasks);
+            List<Value> first = results.get(0).get();
+            for (Future<List<Value>> f : results) {
+                List<Value> res = f.get();
+                assertEquals(values, res.size());
+                for (int i = 0; i < values; i++)
+                    assertSame(first.get(i), res.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void collectedInstancesAreEvicted() throws Exception {
+        Canonicalizer c = Canonicalizer.get();
+        List<Value> garbage = newList();
+        for (int i = 0; i < 100000; i++)
+            garbage.add(Value.makeStr("garbage" + i));
+        // measured while the instances are still strongly held, so none of them can have been evicted yet
+        int before = c.size();
+        long evictionsBefore = c.getEvictions();
+        garbage = null;
+        for (int attempt = 0; attempt < 100 && (c.getEvictions() == evictionsBefore || c.size() >= before); attempt++) {
+            System.gc();
+            Thread.sleep(10);
+            Value.makeStr("trigger" + attempt); // expunges collected entries
+        }
+        assertTrue(c.getEvictions() > evictionsBefore);
+        assertTrue(c.size() < before);
+    }
+}
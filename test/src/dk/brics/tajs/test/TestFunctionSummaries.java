@@ -0,0 +1,86 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.monitoring.AnalysisPhase;
+import dk.brics.tajs.monitoring.CompositeMonitoring;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.solver.CallGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the function summary statistics, i.e. how many calls reuse the existing results of the callee.
+ */
+public class TestFunctionSummaries {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestFunctionSummaries");
+    }
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static class SummaryCounter extends DefaultAnalysisMonitoring {
+
+        private Solver.SolverInterface c;
+
+        private int hits, misses;
+
+        @Override
+        public void setSolverInterface(Solver.SolverInterface c) {
+            this.c = c;
+        }
+
+        @Override
+        public void visitPhasePost(AnalysisPhase phase) {
+            if (phase == AnalysisPhase.ANALYSIS) {
+                CallGraph<?, ?, ?> cg = c.getAnalysisLatticeElement().getCallGraph();
+                hits = cg.getFunctionSummaryHits();
+                misses = cg.getFunctionSummaryMisses();
+            }
+        }
+    }
+
+    private static SummaryCounter run(String... sourceLines) {
+        SummaryCounter counter = new SummaryCounter();
+        Misc.runSource(sourceLines, CompositeMonitoring.buildFromList(counter, Monitoring.make()));
+        return counter;
+    }
+
+    @Test
+    public void repeatedCallsReuseResults() {
+        SummaryCounter once = run(
+                "function format(x) { return '<' + x + '>'; }",
+                "var a = format('a');");
+        before();
+        SummaryCounter thrice = run(
+                "function format(x) { return '<' + x + '>'; }",
+                "var a = format('a');",
+                "var b = format('a');",
+                "var c = format('a');");
+        assertTrue(once.misses > 0);
+        // the second and third calls are covered by the results of the first
+        assertEquals(once.misses, thrice.misses);
+        assertEquals(once.hits + 2, thrice.hits);
+    }
+
+    @Test
+    public void callbackIgnoringArgument() {
+        // the callback contexts keep all resolve values, which identify the nodes of the callback graph
+        Options.get().enableAsyncEvents();
+        Options.get().enableCallbackParameterSensitivity();
+        Options.get().getSoundnessTesterOptions().setTest(false);
+        run("var r;",
+                "Promise.resolve(1).then(function() { r = 42; });",
+                "Promise.resolve('a').then(function() { r = 43; });");
+    }
+}
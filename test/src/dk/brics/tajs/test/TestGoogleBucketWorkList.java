@@ -0,0 +1,21 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+
+/**
+ * Runs {@link TestGoogle} with the bucket work list, which must give the same output as the default work list.
+ */
+public class TestGoogleBucketWorkList extends TestGoogle {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestGoogleBucketWorkList");
+    }
+
+    @Before
+    @Override
+    public void init() {
+        super.init();
+        Options.get().enableBucketWorkList();
+    }
+}
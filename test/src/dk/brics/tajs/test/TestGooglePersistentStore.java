@@ -0,0 +1,21 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+
+/**
+ * Runs {@link TestGoogle} with the persistent store, which must give the same output as the default store.
+ */
+public class TestGooglePersistentStore extends TestGoogle {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestGooglePersistentStore");
+    }
+
+    @Before
+    @Override
+    public void init() {
+        super.init();
+        Options.get().enablePersistentStore();
+    }
+}
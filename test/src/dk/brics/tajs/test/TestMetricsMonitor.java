@@ -0,0 +1,80 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.monitoring.MetricsMonitor;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MetricsMonitor}.
+ */
+@SuppressWarnings("static-method")
+public class TestMetricsMonitor {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestMetricsMonitor");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static List<String> fetch(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertTrue(connection.getContentType(), connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                return in.lines().collect(Collectors.toList());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void prometheusEndpoint() throws IOException {
+        Options.get().setMetricsPort(0);
+        Misc.runSource("function f(x) {",
+                "  return x;",
+                "}",
+                "f(1);",
+                "f('a');");
+        int port = MetricsMonitor.getPort();
+        assertTrue(port > 0);
+        List<String> lines = fetch(new URL("http://127.0.0.1:" + port + "/metrics"));
+        Map<String, String> values = newMap();
+        for (String line : lines) {
+            if (line.startsWith("# HELP ")) {
+                assertTrue(line, line.matches("# HELP tajs_\\w+ .+"));
+            } else if (line.startsWith("# TYPE ")) {
+                assertTrue(line, line.matches("# TYPE tajs_\\w+ (gauge|counter|histogram)"));
+            } else {
+                assertTrue(line, line.matches("tajs_\\w+(\\{\\w+=\"[^\"]*\"\\})? -?[0-9.E-]+"));
+                String[] sample = line.split(" ");
+                values.put(sample[0], sample[1]);
+            }
+        }
+        assertEquals("1", values.get("tajs_phase{phase=\"scan\"}"));
+        // the states per block are the block entry states, which do not include the call edges
+        assertEquals(Double.parseDouble(values.get("tajs_abstract_states")), Double.parseDouble(values.get("tajs_states_per_block_sum")), 0);
+        assertTrue(Long.parseLong(values.get("tajs_node_transfers_total")) > 0);
+    }
+}
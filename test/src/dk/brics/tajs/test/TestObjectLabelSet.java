@@ -0,0 +1,96 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.ObjectLabel.Kind;
+import dk.brics.tajs.lattice.ObjectLabelSet;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestObjectLabelSet {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestObjectLabelSet");
+    }
+
+    private ObjectLabel a, b, c, d;
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+        a = ObjectLabel.make(ECMAScriptObjects.OBJECT_PROTOTYPE, Kind.OBJECT);
+        b = ObjectLabel.make(ECMAScriptObjects.ARRAY_PROTOTYPE, Kind.ARRAY);
+        c = ObjectLabel.make(ECMAScriptObjects.ARRAY_SORT, Kind.FUNCTION);
+        d = ObjectLabel.make(ECMAScriptObjects.FUNCTION_PROTOTYPE, Kind.FUNCTION);
+    }
+
+    @Test
+    public void equalLabelsHaveEqualIds() {
+        assertEquals(a.getId(), ObjectLabel.make(ECMAScriptObjects.OBJECT_PROTOTYPE, Kind.OBJECT).getId());
+        assertFalse(a.getId() == b.getId());
+    }
+
+    @Test
+    public void labelsKeptAcrossResetKeepTheirIds() {
+        ObjectLabelSet s = ObjectLabelSet.make(Arrays.asList(a, b));
+        Main.reset();
+        Options.get().enableTest();
+        ObjectLabel a2 = ObjectLabel.make(ECMAScriptObjects.OBJECT_PROTOTYPE, Kind.OBJECT);
+        assertEquals(a, a2);
+        assertEquals(a.getId(), a2.getId());
+        assertTrue(s.contains(a2));
+        Set<ObjectLabel> expected = new HashSet<>(Arrays.asList(a2, b));
+        assertEquals(expected, s);
+        assertEquals(s, expected);
+    }
+
+    @Test
+    public void makeRemovesDuplicatesAndKeepsOrder() {
+        ObjectLabelSet s = ObjectLabelSet.make(Arrays.asList(c, a, c, b, a));
+        assertEquals(Arrays.asList(c, a, b), newList(s));
+        assertEquals(new HashSet<>(Arrays.asList(a, b, c)), s);
+        assertEquals(s, new HashSet<>(Arrays.asList(a, b, c)));
+        assertEquals(new HashSet<>(Arrays.asList(a, b, c)).hashCode(), s.hashCode());
+    }
+
+    @Test
+    public void unionKeepsInsertionOrder() {
+        ObjectLabelSet s1 = ObjectLabelSet.make(Arrays.asList(d, b));
+        ObjectLabelSet s2 = ObjectLabelSet.make(Arrays.asList(c, b, a));
+        ObjectLabelSet u = ObjectLabelSet.union(s1, s2);
+        Set<ObjectLabel> expected = newSet(s1);
+        expected.addAll(s2);
+        assertEquals(newList(expected), newList(u));
+        assertTrue(u.containsAll(s1));
+        assertTrue(u.containsAll(s2));
+        assertFalse(s1.containsAll(u));
+        assertFalse(s2.contains(d));
+    }
+
+    @Test
+    public void joinedValuesShareLabelSets() {
+        Value v1 = Value.makeObject(a).join(Value.makeObject(b));
+        Value v2 = Value.makeObject(b).join(Value.makeObject(a));
+        assertSame(v1, v2);
+        List<ObjectLabel> labels = newList(v1.getObjectLabels());
+        assertEquals(Arrays.asList(a, b), labels);
+        assertSame(v1, v1.join(Value.makeObject(a)));
+    }
+}
@@ -0,0 +1,81 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
+import dk.brics.tajs.js2flowgraph.FlowGraphBuilder;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.Pair;
+import dk.brics.tajs.util.ParseError;
+import dk.brics.tajs.util.PathAndURLUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that parsing the source files concurrently gives the same flow graph as parsing them one at a time.
+ */
+@SuppressWarnings("static-method")
+public class TestParallelParsing {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestParallelParsing");
+    }
+
+    private static final String[] files = {
+            "test-resources/src/google/richards.js",
+            "test-resources/src/google/splay.js",
+            "test-resources/src/google/cryptobench.js",
+            "test-resources/src/google/delta-blue.js",
+    };
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static List<Pair<String, SourceLocationMaker>> load(String... files) throws IOException {
+        List<Pair<String, SourceLocationMaker>> sources = newList();
+        for (String file : files) {
+            URL url = PathAndURLUtils.normalizeFileURL(PathAndURLUtils.toURL(Paths.get(file)));
+            String code = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+            sources.add(Pair.make(code, new SourceLocation.StaticLocationMaker(url)));
+        }
+        return sources;
+    }
+
+    private static FlowGraph build(List<Pair<String, SourceLocationMaker>> sources, int threads) {
+        FlowGraphBuilder builder = FlowGraphBuilder.makeForMain(sources.get(sources.size() - 1).getSecond());
+        if (threads > 1)
+            builder.preParseStandAloneCode(sources, threads);
+        for (Pair<String, SourceLocationMaker> source : sources)
+            builder.transformStandAloneCode(source.getFirst(), source.getSecond());
+        return builder.close();
+    }
+
+    @Test
+    public void sameFlowGraph() throws IOException {
+        FlowGraph sequential = build(load(files), 1);
+        FlowGraph parallel = build(load(files), 4);
+        assertEquals(sequential.getNumberOfNodes(), parallel.getNumberOfNodes());
+        assertEquals(sequential.toString(), parallel.toString());
+    }
+
+    @Test(expected = ParseError.class)
+    public void syntaxError() throws IOException {
+        List<Pair<String, SourceLocationMaker>> sources = load(files);
+        sources.add(1, Pair.make("var x = ;", sources.get(1).getSecond()));
+        build(sources, 4);
+    }
+}
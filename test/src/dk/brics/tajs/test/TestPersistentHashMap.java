@@ -0,0 +1,176 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.PersistentHashMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestPersistentHashMap {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestPersistentHashMap");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    /**
+     * Key with a configurable hash code, for provoking collisions.
+     */
+    private static final class Key {
+
+        private final int id;
+
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "k" + id;
+        }
+    }
+
+    private static Key key(Random r, int n, boolean collisions) {
+        int id = r.nextInt(n);
+        return new Key(id, collisions ? id % 7 : id * 0x9E3779B9);
+    }
+
+    private static void randomOperations(boolean collisions) {
+        Random r = new Random(42);
+        PersistentHashMap<Key, Integer> m = new PersistentHashMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            Key k = key(r, 500, collisions);
+            if (r.nextInt(3) == 0)
+                assertEquals(expected.remove(k), m.remove(k));
+            else {
+                Integer v = r.nextInt(10);
+                assertEquals(expected.put(k, v), m.put(k, v));
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        assertEquals(expected, m);
+        assertEquals(expected.hashCode(), m.hashCode());
+        for (Key k : expected.keySet())
+            assertTrue(m.containsKey(k));
+    }
+
+    @Test
+    public void randomOperations() {
+        randomOperations(false);
+    }
+
+    @Test
+    public void randomOperationsWithCollisions() {
+        randomOperations(true);
+    }
+
+    @Test
+    public void forkIsIndependent() {
+        PersistentHashMap<Key, Integer> m1 = new PersistentHashMap<>();
+        for (int i = 0; i < 1000; i++)
+            m1.put(new Key(i, i), i);
+        PersistentHashMap<Key, Integer> m2 = m1.fork();
+        for (int i = 0; i < 1000; i += 2)
+            m2.put(new Key(i, i), -i);
+        for (int i = 1; i < 1000; i += 2)
+            m1.remove(new Key(i, i));
+        assertEquals(500, m1.size());
+        assertEquals(1000, m2.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? Integer.valueOf(i) : null, m1.get(new Key(i, i)));
+            assertEquals(Integer.valueOf(i % 2 == 0 ? -i : i), m2.get(new Key(i, i)));
+        }
+    }
+
+    @Test
+    public void diffSkipsSharedEntries() {
+        Random r = new Random(7);
+        PersistentHashMap<Key, Integer> m1 = new PersistentHashMap<>();
+        for (int i = 0; i < 2000; i++)
+            m1.put(key(r, 3000, i % 2 == 0), r.nextInt(1000));
+        PersistentHashMap<Key, Integer> m2 = m1.fork();
+        assertTrue(PersistentHashMap.diff(m1, m2).isEmpty());
+        Set<Key> changed = newSet();
+        for (int i = 0; i < 50; i++) {
+            Key k = key(r, 3000, i % 2 == 0);
+            if (r.nextBoolean()) {
+                if (m2.containsKey(k))
+                    changed.add(k);
+                m2.remove(k);
+            } else {
+                m2.put(k, 1000 + i); // fresh value object
+                changed.add(k);
+            }
+        }
+        List<Key> diff = PersistentHashMap.diff(m1, m2);
+        assertEquals(changed, newSet(diff));
+        assertEquals(diff.size(), newSet(diff).size());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        PersistentHashMap<Key, Integer> m = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++)
+            m.put(new Key(i, i % 3), i);
+        for (Iterator<Map.Entry<Key, Integer>> it = m.entrySet().iterator(); it.hasNext(); )
+            if (it.next().getValue() % 2 == 0)
+                it.remove();
+        assertEquals(50, m.size());
+        for (Map.Entry<Key, Integer> e : m.entrySet())
+            assertFalse(e.getValue() % 2 == 0);
+        assertNull(m.get(new Key(0, 0)));
+    }
+
+    @Test
+    public void updatesDuringIterationKeepSnapshot() {
+        PersistentHashMap<Key, Integer> m = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++)
+            m.put(new Key(i, i % 3), i);
+        int seen = 0;
+        for (Map.Entry<Key, Integer> e : m.entrySet()) {
+            assertTrue(e.getValue() < 100);
+            seen++;
+            m.put(new Key(100 + e.getValue(), 0), 100 + e.getValue());
+            m.remove(new Key(99 - e.getValue(), (99 - e.getValue()) % 3));
+        }
+        assertEquals(100, seen);
+        assertEquals(100, m.size());
+        for (int i = 0; i < 100; i++) {
+            assertNull(m.get(new Key(i, i % 3)));
+            assertEquals(Integer.valueOf(100 + i), m.get(new Key(100 + i, 0)));
+        }
+    }
+}
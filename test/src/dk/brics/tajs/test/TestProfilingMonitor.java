@@ -0,0 +1,66 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.monitoring.ProfilingMonitor;
+import dk.brics.tajs.options.OptionValues;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.args4j.CmdLineException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProfilingMonitor}.
+ */
+@SuppressWarnings("static-method")
+public class TestProfilingMonitor {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestProfilingMonitor");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    @Test
+    public void collapsedStacks() throws IOException {
+        Path stacks = Files.createTempFile("tajs-profile", ".txt");
+        try {
+            Options.get().setProfileStacksFile(stacks);
+            Misc.runSource("function f(n) {",
+                    "  var s = 0;",
+                    "  for (var i = 0; i < n; i++)",
+                    "    s += i;",
+                    "  return s;",
+                    "}",
+                    "f(10);");
+            List<String> lines = Files.readAllLines(stacks, StandardCharsets.UTF_8);
+            assertFalse(lines.isEmpty());
+            // function;context;block micros
+            for (String line : lines)
+                assertTrue(line, line.matches("[^;]+;[^;]+;block \\d+ \\([^;]*\\) \\d+"));
+            assertTrue(lines.stream().anyMatch(line -> line.startsWith("<main> (")));
+            assertTrue(lines.stream().anyMatch(line -> line.startsWith("f (")));
+        } finally {
+            Files.delete(stacks);
+        }
+    }
+
+    @Test(expected = CmdLineException.class)
+    public void nonPositiveTop() throws CmdLineException {
+        OptionValues options = new OptionValues();
+        options.parse(new String[]{"-profile-top", "0", "test-resources/src/google/richards.js"});
+        options.checkConsistency();
+    }
+}
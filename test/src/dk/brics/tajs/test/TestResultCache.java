@@ -0,0 +1,123 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Analysis;
+import dk.brics.tajs.monitoring.AnalysisPhase;
+import dk.brics.tajs.monitoring.CompositeMonitoring;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.ResultCache;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ResultCache}.
+ */
+@SuppressWarnings("static-method")
+public class TestResultCache {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestResultCache");
+    }
+
+    private Path dir;
+
+    /**
+     * Set if the last run analyzed the program rather than replaying a cached result.
+     */
+    private boolean analyzed;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("tajs-result-cache");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path f : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(f);
+        }
+    }
+
+    /**
+     * Analyzes the given file with the result cache and returns the log output.
+     */
+    private String analyze(Path file) {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().getSoundnessTesterOptions().setTest(false);
+        Options.get().setResultCacheDir(dir.resolve("cache"));
+        Options.get().getArguments().add(file);
+        StringWriter out = new StringWriter();
+        WriterAppender appender = new WriterAppender(new PatternLayout("%m%n"), out);
+        Logger root = Logger.getRootLogger();
+        Level level = root.getLevel();
+        int appenders = Collections.list(root.getAllAppenders()).size();
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+        analyzed = false;
+        DefaultAnalysisMonitoring phases = new DefaultAnalysisMonitoring() {
+            @Override
+            public void visitPhasePre(AnalysisPhase phase) {
+                if (phase == AnalysisPhase.ANALYSIS)
+                    analyzed = true;
+            }
+        };
+        try {
+            Analysis a = Main.init(Options.get(), CompositeMonitoring.buildFromList(Monitoring.make(), phases), null);
+            Main.run(a);
+        } finally {
+            root.removeAppender(appender);
+            root.setLevel(level);
+            Main.reset();
+        }
+        assertEquals("the capture appender must be removed", appenders, Collections.list(root.getAllAppenders()).size());
+        return out.toString();
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path file = dir.resolve("program.js");
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void sameSourceReplaysOutput() throws IOException {
+        Path file = write("var x = 'foo' + 1;", "TAJS_dumpValue(x);");
+        String first = analyze(file);
+        assertTrue(analyzed);
+        assertTrue(first.contains("foo1"));
+        String second = analyze(file);
+        assertFalse(analyzed);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void changedSourceMisses() throws IOException {
+        analyze(write("var x = 'foo' + 1;", "TAJS_dumpValue(x);"));
+        String second = analyze(write("var x = 'foo' + 2;", "TAJS_dumpValue(x);"));
+        assertTrue(analyzed);
+        assertTrue(second.contains("foo2"));
+    }
+}
@@ -0,0 +1,78 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.WeakTopologicalOrder;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link WeakTopologicalOrder}.
+ */
+@SuppressWarnings("static-method")
+public class TestWeakTopologicalOrder {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestWeakTopologicalOrder");
+    }
+
+    private static final SourceLocation.SyntheticLocationMaker sourceLocationMaker = new SourceLocation.SyntheticLocationMaker("synthetic");
+
+    private static BasicBlock makeBlock(FlowGraph fg, Function f, int line) {
+        BasicBlock b = new BasicBlock(f);
+        b.addNode(new NopNode(sourceLocationMaker.make(line, -1, line, -1)));
+        fg.addBlock(b);
+        return b;
+    }
+
+    /**
+     * Asserts that the given loop blocks are contiguous in the order, with the head first.
+     */
+    private static void assertLoop(List<BasicBlock> order, BasicBlock head, BasicBlock... body) {
+        int start = order.indexOf(head);
+        List<BasicBlock> loop = order.subList(start, start + 1 + body.length);
+        assertTrue(order.toString(), loop.containsAll(Arrays.asList(body)));
+    }
+
+    @Test
+    public void nestedLoops() {
+        // entry; while (outer) { while (inner) { innerBody } outerLatch } after
+        Function f = new Function("f", Collections.emptyList(), null, sourceLocationMaker.make(1, -1, 1, -1));
+        FlowGraph fg = new FlowGraph(f);
+        BasicBlock entry = makeBlock(fg, f, 1);
+        BasicBlock outerHead = makeBlock(fg, f, 2);
+        BasicBlock innerHead = makeBlock(fg, f, 3);
+        BasicBlock innerBody = makeBlock(fg, f, 4);
+        BasicBlock outerLatch = makeBlock(fg, f, 5);
+        BasicBlock after = makeBlock(fg, f, 6);
+        BasicBlock exceptionalExit = makeBlock(fg, f, 7);
+        entry.addSuccessor(outerHead);
+        outerHead.addSuccessor(after);
+        outerHead.addSuccessor(innerHead);
+        innerHead.addSuccessor(outerLatch);
+        innerHead.addSuccessor(innerBody);
+        innerBody.addSuccessor(innerHead);
+        outerLatch.addSuccessor(outerHead);
+        f.setEntry(entry);
+        f.setOrdinaryExit(after);
+        f.setExceptionalExit(exceptionalExit);
+        f.complete();
+
+        List<BasicBlock> order = WeakTopologicalOrder.make(f);
+        assertEquals(f.getBlocks().size(), order.size());
+        assertTrue(order.containsAll(f.getBlocks()));
+        assertLoop(order, outerHead, innerHead, innerBody, outerLatch);
+        assertLoop(order, innerHead, innerBody);
+        assertTrue(order.toString(), order.indexOf(entry) < order.indexOf(outerHead));
+        assertTrue(order.toString(), order.indexOf(outerLatch) < order.indexOf(after));
+    }
+}
@@ -0,0 +1,73 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.monitoring.CompositeMonitoring;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.Options;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs programs from {@link TestGoogle} with the default work list and with the weak topological order work list,
+ * and reports the number of block transfers of each.
+ */
+@SuppressWarnings("static-method")
+public class TestWeakTopologicalWorkList {
+
+    private static Logger log = Logger.getLogger(TestWeakTopologicalWorkList.class);
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestWeakTopologicalWorkList");
+    }
+
+    private static class BlockTransferCounter extends DefaultAnalysisMonitoring {
+
+        private int block_transfers;
+
+        @Override
+        public void visitBlockTransferPre(BasicBlock block, State state) {
+            block_transfers++;
+        }
+    }
+
+    private static int countBlockTransfers(String file, boolean wto) {
+        Main.reset();
+        Options.get().enableTest();
+        if (wto)
+            Options.get().enableWeakTopologicalWorkList();
+        BlockTransferCounter counter = new BlockTransferCounter();
+        Misc.runPart(wto ? "wto" : "default", CompositeMonitoring.buildFromList(Monitoring.make(), counter), file);
+        return counter.block_transfers;
+    }
+
+    private static void compare(String file) {
+        int defaultTransfers = countBlockTransfers(file, false);
+        int wtoTransfers = countBlockTransfers(file, true);
+        log.info(file + ": block transfers: default=" + defaultTransfers + ", wto=" + wtoTransfers);
+        Assert.assertTrue(defaultTransfers > 0 && wtoTransfers > 0);
+    }
+
+    @Test
+    public void google_richards() {
+        compare("test-resources/src/google/richards.js");
+    }
+
+    @Test
+    public void google_splay() {
+        compare("test-resources/src/google/splay.js");
+    }
+
+    @Test
+    public void google_cryptobench() {
+        compare("test-resources/src/google/cryptobench.js");
+    }
+
+    @Test
+    public void google_delta_blue() {
+        compare("test-resources/src/google/delta-blue.js");
+    }
+}